@@ -20,7 +20,7 @@ import socketService from '../services/SocketService';
 
 interface ReceivedMessage {
     id: string;
-    sender: { username: string };
+    senderUsername: string;
     encryptedAesKey: string;
     encryptedMessage: string;
     iv: string;
@@ -106,7 +106,7 @@ export default function ChatPage() {
                     id: message.id,
                     text: decryptedText,
                     fromMe: false,
-                    senderUsername: message.sender.username,
+                    senderUsername: message.senderUsername,
                 };
 
                 setMessages((prevMessages) => [...prevMessages, newMessage]);
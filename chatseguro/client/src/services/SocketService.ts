@@ -36,16 +36,13 @@ class SocketService {
         return;
     }
 
-    // --- MUDANÇA CRUCIAL AQUI ---
-    // Anexe o token como um parâmetro de query na URL.
-    const socketUrl = `http://${window.location.hostname}:8080/ws?token=${token}`;
+    const socketUrl = `http://${window.location.hostname}:8080/ws`;
 
     this.client = new Client({
-        // Use a nova URL que contém o token.
         webSocketFactory: () => new SockJS(socketUrl),
 
-        // Não precisamos mais de cabeçalhos de conexão.
-        // connectHeaders: { ... },
+        // O servidor autentica a sessão uma vez, no frame CONNECT
+        connectHeaders: { Authorization: `Bearer ${token}` },
 
         onConnect: onConnectCallback,
         onStompError: (frame) => {
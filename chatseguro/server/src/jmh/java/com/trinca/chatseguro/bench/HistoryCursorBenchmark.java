@@ -0,0 +1,38 @@
+package com.trinca.chatseguro.bench;
+
+import com.trinca.chatseguro.dto.MessageCursor;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Parte do histórico que roda na JVM: a ordenação e o limite ficam na consulta
+// (MessageRepository), sobra o cursor decodificado/gerado a cada página
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryCursorBenchmark {
+
+	private MessageCursor cursor;
+	private String encoded;
+
+	@Setup
+	public void setup() {
+		cursor = new MessageCursor(LocalDateTime.of(2025, 6, 1, 12, 0, 0, 123_456_000), new UUID(7, 7));
+		encoded = cursor.encode();
+	}
+
+	@Benchmark
+	public String encode() {
+		return cursor.encode();
+	}
+
+	@Benchmark
+	public MessageCursor decode() {
+		return MessageCursor.decode(encoded);
+	}
+}
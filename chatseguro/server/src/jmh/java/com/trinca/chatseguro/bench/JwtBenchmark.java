@@ -0,0 +1,48 @@
+package com.trinca.chatseguro.bench;
+
+import com.trinca.chatseguro.service.JwtService;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Geração e verificação de JWT: verifyCached é o caminho normal do JwtAuthFilter (SHA-256 do
+// token + lookup), verifyUncached paga HMAC + parse a cada chamada (jwt.cache.max-size=0)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+
+	private static final String SECRET = "umasecretmuuitocomplexaegrande123456";
+
+	private JwtService cached;
+	private JwtService uncached;
+	private String token;
+
+	@Setup
+	public void setup() {
+		cached = new JwtService(SECRET, 10_000, new SimpleMeterRegistry());
+		uncached = new JwtService(SECRET, 0, new SimpleMeterRegistry());
+		token = cached.generateToken("alice");
+		cached.verify(token);
+	}
+
+	@Benchmark
+	public String generate() {
+		return cached.generateToken("alice");
+	}
+
+	@Benchmark
+	public Claims verifyCached() {
+		return cached.verify(token);
+	}
+
+	@Benchmark
+	public Claims verifyUncached() {
+		return uncached.verify(token);
+	}
+}
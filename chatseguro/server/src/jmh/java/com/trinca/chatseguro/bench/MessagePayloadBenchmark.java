@@ -0,0 +1,78 @@
+package com.trinca.chatseguro.bench;
+
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.trinca.chatseguro.config.PayloadCodec;
+import com.trinca.chatseguro.dto.MessageDto;
+import com.trinca.chatseguro.model.Message;
+import com.trinca.chatseguro.model.User;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Montagem e serialização do payload que vai para /topic/messages e /topic/sent.
+// messageBytes cobre uma mensagem curta e o limite da coluna encrypted_message.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessagePayloadBenchmark {
+
+	@Param({"256", "6000"})
+	public int messageBytes;
+
+	private PayloadCodec codec;
+	private Message message;
+	private MessageDto dto;
+
+	@Setup
+	public void setup() {
+		// Mesma configuração de datas que o ObjectMapper do Spring Boot
+		Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json()
+				.featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+		codec = new PayloadCodec(builder.build(), builder);
+
+		// Semente fixa: o mesmo conteúdo em todas as execuções
+		Random random = new Random(42);
+		byte[] aesKey = new byte[256];
+		byte[] body = new byte[messageBytes];
+		byte[] iv = new byte[16];
+		random.nextBytes(aesKey);
+		random.nextBytes(body);
+		random.nextBytes(iv);
+
+		message = new Message(
+				User.reference(new UUID(1, 1), "alice"),
+				User.reference(new UUID(2, 2), "bob"),
+				aesKey, body, iv, LocalDateTime.of(2025, 6, 1, 12, 0));
+		message.setId(new UUID(3, 3));
+		message.setSeq(1_000_000L);
+		dto = MessageDto.fromEntity(message);
+	}
+
+	@Benchmark
+	public MessageDto fromEntity() {
+		return MessageDto.fromEntity(message);
+	}
+
+	@Benchmark
+	public byte[] toJson() {
+		return codec.toJson(dto);
+	}
+
+	@Benchmark
+	public byte[] toCbor() {
+		return codec.toCbor(dto);
+	}
+
+	// Caminho completo do envio: DTO + JSON
+	@Benchmark
+	public byte[] fromEntityToJson() {
+		return codec.toJson(MessageDto.fromEntity(message));
+	}
+}
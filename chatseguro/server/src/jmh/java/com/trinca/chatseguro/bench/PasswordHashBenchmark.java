@@ -0,0 +1,38 @@
+package com.trinca.chatseguro.bench;
+
+import com.trinca.chatseguro.config.WebSecurityConfig;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+// Custo do BCrypt com o encoder do WebSecurityConfig: é o que limita logins/registros por
+// núcleo no PasswordHasher. Mudou o custo do encoder, muda o resultado aqui.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordHashBenchmark {
+
+	private PasswordEncoder encoder;
+	private String hash;
+
+	@Setup
+	public void setup() {
+		// O filtro JWT não participa do bean do encoder
+		encoder = new WebSecurityConfig(null).passwordEncoder();
+		hash = encoder.encode("secret");
+	}
+
+	@Benchmark
+	public String encode() {
+		return encoder.encode("secret");
+	}
+
+	@Benchmark
+	public boolean matches() {
+		return encoder.matches("secret", hash);
+	}
+}
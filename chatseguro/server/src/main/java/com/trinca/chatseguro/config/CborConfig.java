@@ -0,0 +1,15 @@
+package com.trinca.chatseguro.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+
+// Respostas REST em CBOR quando o cliente envia "Accept: application/cbor"; JSON continua o padrão
+@Configuration
+public class CborConfig {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(PayloadCodec payloadCodec) {
+        return new MappingJackson2CborHttpMessageConverter(payloadCodec.getCborMapper());
+    }
+}
@@ -1,6 +1,7 @@
 package com.trinca.chatseguro.config;
 
 import com.trinca.chatseguro.service.JwtService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -24,6 +25,14 @@ public class JwtAuthFilter extends OncePerRequestFilter {
     @Autowired
     private SecurityUserDetailsService userDetailsService;
 
+    // Handshake e requisições de transporte do SockJS: a sessão é autenticada no CONNECT
+    // do STOMP (StompAuthInterceptor), então aqui não há token a verificar
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return path.equals("/ws") || path.startsWith("/ws/");
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
@@ -33,24 +42,19 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         String jwt = null;
         String authHeader = request.getHeader("Authorization");
 
-        // Tenta pegar o token do cabeçalho Authorization primeiro
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             jwt = authHeader.substring(7);
         }
-        // --- MUDANÇA CRUCIAL AQUI ---
-        // Se não encontrou no cabeçalho e for uma conexão WebSocket, tenta pegar do parâmetro de query
-        else if (request.getRequestURI().contains("/ws") && request.getParameter("token") != null) {
-            jwt = request.getParameter("token");
-        }
-        // -----------------------------
 
         if (jwt != null) {
-            final String username = jwtService.extractUsername(jwt);
+            // Assinatura verificada uma única vez por requisição (ou reaproveitada do cache)
+            final Claims claims = jwtService.verify(jwt);
+            final String username = claims.getSubject();
 
             if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
                 UserDetails userDetails = userDetailsService.loadUserByUsername(username);
 
-                if (jwtService.isTokenValid(jwt, userDetails.getUsername())) {
+                if (jwtService.isTokenValid(claims, userDetails.getUsername())) {
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                             userDetails, null, userDetails.getAuthorities());
 
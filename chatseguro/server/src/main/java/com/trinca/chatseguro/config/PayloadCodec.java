@@ -0,0 +1,67 @@
+package com.trinca.chatseguro.config;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.UUID;
+
+// Codificação dos payloads de mensagem: JSON (padrão) ou CBOR, em que os campos byte[]
+// viajam como binário em vez de base64. O mapper CBOR usa a mesma configuração do JSON do
+// Spring Boot, então CBOR -> JSON gera exatamente o JSON que o Jackson produziria.
+@Component
+public class PayloadCodec {
+
+    public static final MimeType JSON = MimeTypeUtils.APPLICATION_JSON;
+    public static final MimeType CBOR = new MimeType("application", "cbor");
+
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper cborMapper;
+
+    public PayloadCodec(ObjectMapper jsonMapper, Jackson2ObjectMapperBuilder builder) {
+        this.jsonMapper = jsonMapper;
+        this.cborMapper = builder.factory(new CBORFactory()).build();
+        // Em formatos binários o Jackson gravaria UUID como 16 bytes; mantém como texto
+        this.cborMapper.configOverride(UUID.class).setFormat(JsonFormat.Value.forShape(JsonFormat.Shape.STRING));
+    }
+
+    public ObjectMapper getCborMapper() {
+        return cborMapper;
+    }
+
+    public PreparedPayload prepare(Object payload) {
+        return new PreparedPayload(payload, this);
+    }
+
+    public byte[] toJson(Object payload) {
+        try {
+            return jsonMapper.writeValueAsBytes(payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public byte[] toCbor(Object payload) {
+        try {
+            return cborMapper.writeValueAsBytes(payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public byte[] cborToJson(byte[] cbor) {
+        try {
+            JsonNode tree = cborMapper.readTree(cbor);
+            return jsonMapper.writeValueAsBytes(tree);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
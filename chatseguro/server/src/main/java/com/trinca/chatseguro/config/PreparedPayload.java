@@ -0,0 +1,36 @@
+package com.trinca.chatseguro.config;
+
+// Payload de entrega serializado no máximo uma vez por formato. Os bytes são compartilhados
+// entre destinatário, eco para o remetente, nós remotos e reenvios; não devem ser alterados.
+public final class PreparedPayload {
+
+    private final Object body;
+    private final PayloadCodec codec;
+    private volatile byte[] json;
+    private volatile byte[] cbor;
+
+    PreparedPayload(Object body, PayloadCodec codec) {
+        this.body = body;
+        this.codec = codec;
+    }
+
+    public Object getBody() {
+        return body;
+    }
+
+    public byte[] json() {
+        byte[] bytes = json;
+        if (bytes == null) {
+            json = bytes = codec.toJson(body);
+        }
+        return bytes;
+    }
+
+    public byte[] cbor() {
+        byte[] bytes = cbor;
+        if (bytes == null) {
+            cbor = bytes = codec.toCbor(body);
+        }
+        return bytes;
+    }
+}
@@ -1,39 +1,73 @@
 package com.trinca.chatseguro.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.trinca.chatseguro.event.UserChangedEvent;
 import com.trinca.chatseguro.model.User;
 import com.trinca.chatseguro.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.*;
 
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.Collections;
+import java.util.Set;
 
 @Service
 public class SecurityUserDetailsService implements UserDetailsService {
 
+    private static final Set<GrantedAuthority> AUTHORITIES =
+            Collections.singleton(new SimpleGrantedAuthority("ROLE_USER"));
+
     private final UserRepository userRepository;
 
+    // Só guarda usuário e hash; um UserDetails novo é montado a cada chamada porque
+    // o Spring Security pode apagar a senha do objeto devolvido (eraseCredentials).
+    private final Cache<String, CachedUser> cache;
+
     @Autowired
-    public SecurityUserDetailsService(@Lazy UserRepository userRepository) {
+    public SecurityUserDetailsService(@Lazy UserRepository userRepository,
+                                      @Value("${security.user-cache.ttl:1m}") Duration ttl,
+                                      @Value("${security.user-cache.max-size:10000}") long maxSize) {
         this.userRepository = userRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        CachedUser cached = cache.get(username, this::load);
 
-        System.out.println("Tentando autenticar: " + username);
+        return new org.springframework.security.core.userdetails.User(
+                cached.username(),
+                cached.passwordHash(),
+                AUTHORITIES
+        );
+    }
 
+    private CachedUser load(String username) {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
+        return new CachedUser(user.getUsername(), user.getPasswordHash());
+    }
 
-        return new org.springframework.security.core.userdetails.User(
-                user.getUsername(),
-                user.getPasswordHash(),
-                Collections.singleton(new SimpleGrantedAuthority("ROLE_USER"))
-        );
+    public void evict(String username) {
+        cache.invalidate(username);
+    }
+
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        evict(event.username());
+    }
+
+    private record CachedUser(String username, String passwordHash) {
     }
 }
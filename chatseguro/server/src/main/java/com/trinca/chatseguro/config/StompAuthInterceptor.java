@@ -0,0 +1,121 @@
+package com.trinca.chatseguro.config;
+
+import com.trinca.chatseguro.service.JwtService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.util.Map;
+
+// Autenticação da sessão WebSocket: o JWT vem no header "Authorization: Bearer ..." do frame
+// CONNECT e é verificado uma única vez; o principal fica preso à sessão STOMP. Os frames
+// seguintes só comparam o "exp" guardado na sessão, sem criptografia nem consulta ao banco,
+// e as requisições de transporte do SockJS em /ws nem passam pelo JwtAuthFilter. SUBSCRIBE só
+// é aceito nos tópicos do próprio principal.
+@Component
+public class StompAuthInterceptor implements ChannelInterceptor {
+
+    static final String EXPIRES_AT = "auth.expiresAt";
+    private static final String TOPIC_PREFIX = "/topic/";
+    private static final String CBOR_PREFIX = "cbor/";
+
+    private final JwtService jwtService;
+    private final SecurityUserDetailsService userDetailsService;
+    private final MessageChannel clientOutboundChannel;
+
+    public StompAuthInterceptor(JwtService jwtService,
+                                SecurityUserDetailsService userDetailsService,
+                                @Lazy @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel) {
+        this.jwtService = jwtService;
+        this.userDetailsService = userDetailsService;
+        this.clientOutboundChannel = clientOutboundChannel;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+
+        Map<String, Object> session = accessor.getSessionAttributes();
+        if (accessor.getCommand() == StompCommand.CONNECT) {
+            String error = authenticate(accessor, session);
+            return error == null ? message : reject(accessor, error);
+        }
+        if (accessor.getCommand() != StompCommand.DISCONNECT && session != null
+                && session.get(EXPIRES_AT) instanceof Long expiresAt
+                && System.currentTimeMillis() >= expiresAt) {
+            // Token expirou durante a sessão: o cliente reconecta com um token novo
+            return reject(accessor, "Session token expired");
+        }
+        if (accessor.getCommand() == StompCommand.SUBSCRIBE
+                && !ownsDestination(accessor.getUser(), accessor.getDestination())) {
+            return reject(accessor, "Forbidden destination");
+        }
+        return message;
+    }
+
+    // Todo tópico é por usuário: /topic/{tipo}/{usuário} ou /topic/cbor/{tipo}/{usuário}, e só o
+    // próprio usuário pode se inscrever
+    static boolean ownsDestination(Principal user, String destination) {
+        if (user == null || destination == null || !destination.startsWith(TOPIC_PREFIX)) {
+            return false;
+        }
+        String rest = destination.substring(TOPIC_PREFIX.length());
+        if (rest.startsWith(CBOR_PREFIX)) {
+            rest = rest.substring(CBOR_PREFIX.length());
+        }
+        int slash = rest.indexOf('/');
+        return slash > 0 && rest.substring(slash + 1).equals(user.getName());
+    }
+
+    // Devolve o motivo da recusa, ou null se a sessão foi autenticada
+    private String authenticate(StompHeaderAccessor accessor, Map<String, Object> session) {
+        String header = accessor.getFirstNativeHeader("Authorization");
+        if (header == null || !header.startsWith("Bearer ")) {
+            return "Missing bearer token on CONNECT";
+        }
+
+        UserDetails user;
+        Claims claims;
+        try {
+            claims = jwtService.verify(header.substring(7));
+            user = userDetailsService.loadUserByUsername(claims.getSubject());
+        } catch (JwtException | IllegalArgumentException | UsernameNotFoundException e) {
+            return "Invalid token";
+        }
+        if (!jwtService.isTokenValid(claims, user.getUsername())) {
+            return "Invalid token";
+        }
+
+        accessor.setUser(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+        if (session != null) {
+            session.put(EXPIRES_AT, claims.getExpiration().getTime());
+        }
+        return null;
+    }
+
+    // Responde com ERROR (o Spring fecha a sessão em seguida) e descarta o frame. Lançar exceção
+    // aqui não serve: com a ordem de recebimento preservada o erro só seria logado no servidor.
+    private Message<?> reject(StompHeaderAccessor accessor, String reason) {
+        StompHeaderAccessor error = StompHeaderAccessor.create(StompCommand.ERROR);
+        error.setMessage(reason);
+        error.setSessionId(accessor.getSessionId());
+        clientOutboundChannel.send(MessageBuilder.createMessage(new byte[0], error.getMessageHeaders()));
+        return null;
+    }
+}
@@ -1,7 +1,9 @@
 package com.trinca.chatseguro.config;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -38,6 +40,10 @@ public class WebSecurityConfig {
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
 
                 .authorizeHttpRequests(auth -> auth
+                        // O dispatch ASYNC (ex.: export em streaming) já foi autorizado no REQUEST
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                        // Troca de senha/chave exige usuário autenticado
+                        .requestMatchers(HttpMethod.PUT, "/api/auth/**").authenticated()
                         .requestMatchers(
                                 "/api/auth/**",
                                 "/ws/**"
@@ -1,29 +1,85 @@
 package com.trinca.chatseguro.config;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+import java.util.List;
+
 @Configuration
 @EnableWebSocketMessageBroker
+// Antes do WebSocketSecurityConfig, para que o usuário do CONNECT já exista na autorização
+@Order(Ordered.HIGHEST_PRECEDENCE + 99)
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    // Mesma chave que liga virtual threads no Tomcat (spring.threads.virtual.enabled)
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Autowired
+    private PayloadCodec payloadCodec;
+
+    @Autowired
+    private StompAuthInterceptor stompAuthInterceptor;
+
+    @Autowired
+    private WebSocketMetrics webSocketMetrics;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         config.enableSimpleBroker("/topic");
         config.setApplicationDestinationPrefixes("/app");
+        // Com um executor sem limite de threads, a ordem por sessão precisa ser garantida explicitamente
+        config.setPreservePublishOrder(virtualThreads);
+        config.configureBrokerChannel().interceptors(webSocketMetrics.interceptor("broker"));
     }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        registry.setPreserveReceiveOrder(virtualThreads);
+        // Sem autenticação no handshake: o usuário é definido no CONNECT (StompAuthInterceptor)
         registry.addEndpoint("/ws")
-                .setHandshakeHandler(new UserHandshakeHandler())
                 .setAllowedOrigins(
                         "http://localhost:5173",
                         "http://192.168.160.152:5173" // Mantenha os IPs necessários
                 )
                 .withSockJS();
     }
-}
\ No newline at end of file
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompAuthInterceptor, webSocketMetrics.interceptor("inbound"));
+        if (virtualThreads) {
+            // Handlers bloqueiam no JDBC/group commit; uma virtual thread por frame evita a fila
+            registration.executor(new VirtualThreadTaskExecutor("ws-inbound-"));
+        }
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(webSocketMetrics.interceptor("outbound"));
+        if (virtualThreads) {
+            registration.executor(new VirtualThreadTaskExecutor("ws-outbound-"));
+        }
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        // Frames SEND com "content-type:application/cbor"; os conversores padrão (JSON) continuam ativos
+        MappingJackson2MessageConverter cbor = new MappingJackson2MessageConverter(PayloadCodec.CBOR);
+        cbor.setObjectMapper(payloadCodec.getCborMapper());
+        cbor.setStrictContentTypeMatch(true);
+        messageConverters.add(cbor);
+        return true;
+    }
+}
@@ -0,0 +1,97 @@
+package com.trinca.chatseguro.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.config.WebSocketMessageBrokerStats;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+// Gauges dos canais STOMP e das sessões:
+//   ws.channel.queue     - tarefas esperando na fila do pool (0 com virtual threads, que não enfileiram)
+//   ws.channel.in-flight - handlers executando agora; com virtual threads é aqui que o acúmulo aparece
+//   ws.sessions          - sessões abertas por transporte (websocket, http-streaming, http-polling)
+@Component
+public class WebSocketMetrics implements SmartInitializingSingleton {
+
+    private static final Map<String, String> CHANNELS = Map.of(
+            "inbound", "clientInboundChannel",
+            "outbound", "clientOutboundChannel",
+            "broker", "brokerChannel");
+
+    private final MeterRegistry meterRegistry;
+    private final ListableBeanFactory beanFactory;
+    private final Map<String, AtomicInteger> inFlight = Map.of(
+            "inbound", new AtomicInteger(),
+            "outbound", new AtomicInteger(),
+            "broker", new AtomicInteger());
+
+    public WebSocketMetrics(MeterRegistry meterRegistry, ListableBeanFactory beanFactory) {
+        this.meterRegistry = meterRegistry;
+        this.beanFactory = beanFactory;
+    }
+
+    // Registrado em cada canal pelo WebSocketConfig
+    public ExecutorChannelInterceptor interceptor(String channel) {
+        AtomicInteger counter = inFlight.get(channel);
+        return new ExecutorChannelInterceptor() {
+            @Override
+            public Message<?> beforeHandle(Message<?> message, MessageChannel ch, MessageHandler handler) {
+                counter.incrementAndGet();
+                return message;
+            }
+
+            @Override
+            public void afterMessageHandled(Message<?> message, MessageChannel ch, MessageHandler handler, Exception ex) {
+                counter.decrementAndGet();
+            }
+        };
+    }
+
+    // Os canais e o WebSocketMessageBrokerStats só são buscados depois de criados, sem ciclo com o WebSocketConfig
+    @Override
+    public void afterSingletonsInstantiated() {
+        CHANNELS.forEach((name, bean) -> {
+            Gauge.builder("ws.channel.in-flight", inFlight.get(name), AtomicInteger::get)
+                    .tag("channel", name)
+                    .register(meterRegistry);
+            if (beanFactory.getBean(bean) instanceof ExecutorSubscribableChannel channel) {
+                Gauge.builder("ws.channel.queue", channel, WebSocketMetrics::queued)
+                        .tag("channel", name)
+                        .register(meterRegistry);
+            }
+        });
+
+        WebSocketMessageBrokerStats stats = beanFactory.getBean(WebSocketMessageBrokerStats.class);
+        sessions(stats, "websocket", SubProtocolWebSocketHandler.Stats::getWebSocketSessions);
+        sessions(stats, "http-streaming", SubProtocolWebSocketHandler.Stats::getHttpStreamingSessions);
+        sessions(stats, "http-polling", SubProtocolWebSocketHandler.Stats::getHttpPollingSessions);
+    }
+
+    private void sessions(WebSocketMessageBrokerStats stats, String transport,
+                          ToIntFunction<SubProtocolWebSocketHandler.Stats> count) {
+        Gauge.builder("ws.sessions", stats, s -> {
+                    SubProtocolWebSocketHandler.Stats current = s.getWebSocketSessionStats();
+                    return current != null ? count.applyAsInt(current) : 0;
+                })
+                .tag("transport", transport)
+                .register(meterRegistry);
+    }
+
+    private static double queued(ExecutorSubscribableChannel channel) {
+        return channel.getExecutor() instanceof ThreadPoolTaskExecutor pool
+                ? pool.getThreadPoolExecutor().getQueue().size()
+                : 0;
+    }
+}
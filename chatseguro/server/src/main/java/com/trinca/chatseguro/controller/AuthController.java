@@ -1,21 +1,30 @@
 package com.trinca.chatseguro.controller;
 
+import com.trinca.chatseguro.dto.PublicKeyDto;
+import com.trinca.chatseguro.exception.BadRequestException;
 import com.trinca.chatseguro.exception.UserNotFoundException;
 import com.trinca.chatseguro.model.User;
 import com.trinca.chatseguro.service.JwtService;
+import com.trinca.chatseguro.service.LoginRateLimiter;
+import com.trinca.chatseguro.service.PublicKeyDirectory;
 import com.trinca.chatseguro.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.security.Principal;
-import java.util.Map;
-import java.util.Optional;
+import java.util.*;
 
 @RestController
 @RequestMapping("/api/auth")
 public class AuthController {
 
+    private static final CacheControl KEY_CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+
     @Autowired
     private UserService userService;
 
@@ -23,10 +32,15 @@ public class AuthController {
     private JwtService jwtService;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private LoginRateLimiter loginRateLimiter;
+
+    @Autowired
+    private PublicKeyDirectory publicKeyDirectory;
 
     @PostMapping("/register")
-    public User register(@RequestBody Map<String, String> body) throws Exception {
+    public User register(@RequestBody Map<String, String> body, HttpServletRequest request) throws Exception {
+        loginRateLimiter.acquire(null, request.getRemoteAddr());
+
         String username = body.get("username");
         String email = body.get("email");
         String password = body.get("password");
@@ -36,14 +50,17 @@ public class AuthController {
     }
 
     @PostMapping("/login")
-    public Map<String, String> login(@RequestBody Map<String, String> body) throws Exception {
+    public Map<String, String> login(@RequestBody Map<String, String> body, HttpServletRequest request) throws Exception {
         String username = body.get("username");
         String password = body.get("password");
 
+        // Antes de qualquer BCrypt: limite por usuário (senha adivinhada) e por IP (varredura)
+        loginRateLimiter.acquire(username, request.getRemoteAddr());
+
         User user = userService.findByUsername(username)
                 .orElseThrow(() -> new Exception("User not found"));
 
-        if (!passwordEncoder.matches(password, user.getPasswordHash())) {
+        if (!userService.verifyPassword(password, user.getPasswordHash())) {
             throw new Exception("Invalid credentials");
         }
 
@@ -58,14 +75,64 @@ public class AuthController {
                 .orElseThrow(() -> new Exception("User not found"));
     }
 
+    @PutMapping("/password")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void changePassword(@RequestBody Map<String, String> body, Principal principal,
+                               HttpServletRequest request) {
+        String password = body.get("password");
+        if (password == null || password.isBlank()) {
+            throw new BadRequestException("Missing password");
+        }
+        // A senha atual é conferida com BCrypt: mesmo limite do login
+        loginRateLimiter.acquire(principal.getName(), request.getRemoteAddr());
+        userService.changePassword(principal.getName(), body.get("currentPassword"), password);
+    }
+
+    @PutMapping("/public-key")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void updatePublicKey(@RequestBody Map<String, String> body, Principal principal,
+                                HttpServletRequest request) {
+        String publicKey = body.get("publicKey");
+        if (publicKey == null || publicKey.isBlank()) {
+            throw new BadRequestException("Missing publicKey");
+        }
+        loginRateLimiter.acquire(principal.getName(), request.getRemoteAddr());
+        userService.updatePublicKey(principal.getName(), body.get("currentPassword"), publicKey);
+    }
+
+    // Chaves mudam raramente: o cliente revalida sempre (no-cache) e quase sempre recebe 304
     @GetMapping("/public-key/{username}")
-    public Map<String, String> getPublicKey(@PathVariable String username) throws Exception {
-        return userService.findByUsername(username)
-                .map(user -> Map.of(
-                        "username", user.getUsername(),
-                        "publicKey", user.getPublicKey()
-                ))
+    public ResponseEntity<Map<String, String>> getPublicKey(@PathVariable String username,
+                                                            WebRequest request) throws Exception {
+        PublicKeyDto key = publicKeyDirectory.find(username)
                 .orElseThrow(() -> new UserNotFoundException(username));
+        if (request.checkNotModified(key.etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(key.etag)
+                .cacheControl(KEY_CACHE_CONTROL)
+                .body(Map.of(
+                        "username", key.username,
+                        "publicKey", key.publicKey
+                ));
+    }
+
+    // Lista de contatos inteira em uma requisição: ?usernames=a,b,c (até PublicKeyDirectory.MAX_BULK)
+    @GetMapping("/public-keys")
+    public ResponseEntity<List<PublicKeyDto>> getPublicKeys(@RequestParam Set<String> usernames,
+                                                            WebRequest request) {
+        List<PublicKeyDto> keys = new ArrayList<>(publicKeyDirectory.findAll(usernames).values());
+        keys.sort(Comparator.comparing(k -> k.username));
+
+        String etag = PublicKeyDirectory.etag(keys);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(KEY_CACHE_CONTROL)
+                .body(keys);
     }
 
 }
@@ -1,12 +1,21 @@
 package com.trinca.chatseguro.controller;
 
-import com.trinca.chatseguro.model.Message;
+import com.trinca.chatseguro.dto.MessageDto;
+import com.trinca.chatseguro.dto.SyncBatchDto;
+import com.trinca.chatseguro.exception.BadRequestException;
 import com.trinca.chatseguro.service.ChatService;
+import com.trinca.chatseguro.service.SyncService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.security.Principal;
+import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -15,13 +24,18 @@ import java.util.UUID;
 @RequestMapping("/api/chat")
 public class ChatController {
 
+    private static final Logger log = LoggerFactory.getLogger(ChatController.class);
+
     @Autowired
     private ChatService chatService;
 
+    @Autowired
+    private SyncService syncService;
+
     @Deprecated
     @PostMapping("/send")
     @ResponseStatus(HttpStatus.CREATED)
-    public Message sendMessage(@RequestBody Map<String, String> body, Principal principal) throws Exception {
+    public MessageDto sendMessage(@RequestBody Map<String, String> body, Principal principal) throws Exception {
         String receiver = body.get("receiver");
         String encryptedAesKey = body.get("encryptedAesKey");
         String encryptedMessage = body.get("encryptedMessage");
@@ -29,32 +43,69 @@ public class ChatController {
         String hmac = body.get("hmac");
 
         if (receiver == null || encryptedAesKey == null || encryptedMessage == null || iv == null || hmac == null) {
-            throw new IllegalArgumentException("Missing fields in message body");
+            throw new BadRequestException("Missing fields in message body");
         }
 
-        return chatService.sendMessage(
-                principal.getName(),
-                receiver,
-                encryptedAesKey,
-                encryptedMessage,
-                iv
-        );
+        Base64.Decoder base64 = Base64.getDecoder();
+        byte[] aesKey, message, ivBytes;
+        try {
+            aesKey = base64.decode(encryptedAesKey);
+            message = base64.decode(encryptedMessage);
+            ivBytes = base64.decode(iv);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid base64 in message body");
+        }
+        return MessageDto.fromEntity(chatService.sendMessage(principal.getName(), receiver, aesKey, message, ivBytes));
     }
 
     @GetMapping("/inbox")
-    public List<Message> inbox(Principal principal) throws Exception {
-        System.out.println("Usuário autenticado: " + principal.getName());
+    public List<MessageDto> inbox(Principal principal) throws Exception {
+        log.debug("Inbox solicitada por {}", principal.getName());
         return chatService.getMessagesForUser(principal.getName());
     }
 
     @GetMapping("/sent")
-    public List<Message> sent(Principal principal) throws Exception {
+    public List<MessageDto> sent(Principal principal) throws Exception {
         return chatService.getMessagesSentByUser(principal.getName());
     }
 
+    @GetMapping("/sync")
+    public SyncBatchDto sync(@RequestParam String device,
+                             @RequestParam(required = false) Long after,
+                             @RequestParam(defaultValue = "200") int limit,
+                             Principal principal) {
+        return syncService.sync(principal.getName(), device, after, limit);
+    }
+
+    @PostMapping("/sync/ack")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void ack(@RequestBody Map<String, Object> body, Principal principal) {
+        Object device = body.get("device");
+        Object seq = body.get("seq");
+        if (!(device instanceof String) || !(seq instanceof Number)) {
+            throw new BadRequestException("Missing fields in ack body");
+        }
+        syncService.ack(principal.getName(), (String) device, ((Number) seq).longValue());
+    }
+
+    // Backup/migração de dispositivo: NDJSON em streaming, retomável por ?after=<seq>
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "0") long after,
+                                                        Principal principal) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(syncService.export(principal.getName(), after));
+    }
+
     @DeleteMapping("/delete/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteMessage(@PathVariable UUID id, Principal principal) throws Exception {
         chatService.deleteMessage(id, principal.getName());
     }
+
+    // { "ids": [...] } -> { "deleted": n }; só mensagens enviadas pelo usuário, em um único DELETE
+    @PostMapping("/delete")
+    public Map<String, Integer> deleteMessages(@RequestBody Map<String, List<UUID>> body, Principal principal) {
+        return Map.of("deleted", chatService.deleteMessages(body.get("ids"), principal.getName()));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,118 @@
+package com.trinca.chatseguro.controller;
+
+import com.trinca.chatseguro.dto.ConversationPageDto;
+import com.trinca.chatseguro.exception.BadRequestException;
+import com.trinca.chatseguro.model.ChatGroup;
+import com.trinca.chatseguro.model.KeyEpoch;
+import com.trinca.chatseguro.model.User;
+import com.trinca.chatseguro.service.GroupService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.security.Principal;
+import java.util.*;
+
+@RestController
+@RequestMapping("/api/groups")
+public class GroupController {
+
+    @Autowired private GroupService groupService;
+
+    // { "name": ..., "members": ["bob", "carol"] }
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Map<String, Object> create(@RequestBody Map<String, Object> body, Principal principal) {
+        ChatGroup group = groupService.create(principal.getName(), (String) body.get("name"), usernames(body.get("members")));
+        return describe(group);
+    }
+
+    @GetMapping
+    public List<Map<String, Object>> myGroups(Principal principal) {
+        return groupService.groupsOf(principal.getName()).stream().map(this::describe).toList();
+    }
+
+    @GetMapping("/{id}/members")
+    public List<String> members(@PathVariable UUID id, Principal principal) {
+        groupService.requireMember(id, principal.getName());
+        return groupService.members(id).stream().map(User::getUsername).toList();
+    }
+
+    @PostMapping("/{id}/members")
+    public void addMember(@PathVariable UUID id, @RequestBody Map<String, String> body, Principal principal) {
+        String username = body.get("username");
+        if (username == null) {
+            throw new BadRequestException("Missing username");
+        }
+        groupService.addMember(id, principal.getName(), username);
+    }
+
+    @DeleteMapping("/{id}/members/{username}")
+    public void removeMember(@PathVariable UUID id, @PathVariable String username, Principal principal) {
+        groupService.removeMember(id, principal.getName(), username);
+    }
+
+    // { "wrappedKeys": { "alice": base64, "bob": base64, ... } } com todos os membros atuais
+    @PostMapping("/{id}/key-epochs")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Map<String, Object> startKeyEpoch(@PathVariable UUID id, @RequestBody Map<String, Map<String, String>> body,
+                                             Principal principal) {
+        Map<String, String> encoded = body.get("wrappedKeys");
+        if (encoded == null) {
+            throw new BadRequestException("Missing wrappedKeys");
+        }
+        Map<String, byte[]> wrappedKeys = new HashMap<>();
+        try {
+            encoded.forEach((username, key) -> wrappedKeys.put(username, Base64.getDecoder().decode(key)));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new BadRequestException("Invalid base64 in wrappedKeys");
+        }
+
+        KeyEpoch epoch = groupService.startKeyEpoch(id, principal.getName(), wrappedKeys);
+        return Map.of("id", epoch.getId());
+    }
+
+    @GetMapping("/{id}/key-epochs/{epochId}")
+    public Map<String, Object> keyEpoch(@PathVariable UUID id, @PathVariable UUID epochId, Principal principal) {
+        return Map.of(
+                "id", epochId,
+                "encryptedAesKey", groupService.memberKey(id, epochId, principal.getName())
+        );
+    }
+
+    // Mesma paginação por cursor de /api/messages/conversation/{other}/history
+    @GetMapping("/{id}/history")
+    public ConversationPageDto history(
+            Principal principal,
+            @PathVariable UUID id,
+            @RequestParam(required = false) String before,
+            @RequestParam(defaultValue = "50") int limit
+    ) {
+        return groupService.history(id, principal.getName(), before, limit);
+    }
+
+    private Map<String, Object> describe(ChatGroup group) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("id", group.getId());
+        view.put("name", group.getName());
+        view.put("createdAt", group.getCreatedAt());
+        return view;
+    }
+
+    private static List<String> usernames(Object value) {
+        if (value == null) {
+            return List.of();
+        }
+        if (!(value instanceof List<?> list)) {
+            throw new BadRequestException("members must be a list of usernames");
+        }
+        List<String> usernames = new ArrayList<>();
+        for (Object item : list) {
+            if (!(item instanceof String username)) {
+                throw new BadRequestException("members must be a list of usernames");
+            }
+            usernames.add(username);
+        }
+        return usernames;
+    }
+}
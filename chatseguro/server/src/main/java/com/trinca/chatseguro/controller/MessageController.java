@@ -1,38 +1,93 @@
 package com.trinca.chatseguro.controller;
 
+import com.trinca.chatseguro.dto.ConversationPageDto;
 import com.trinca.chatseguro.dto.MessageDto;
-import com.trinca.chatseguro.model.Message;
+import com.trinca.chatseguro.dto.ReceiptDto;
+import com.trinca.chatseguro.exception.BadRequestException;
+import com.trinca.chatseguro.model.KeyEpoch;
 import com.trinca.chatseguro.model.User;
+import com.trinca.chatseguro.service.ChatService;
 import com.trinca.chatseguro.service.MessageService;
-import com.trinca.chatseguro.service.UserService;
+import com.trinca.chatseguro.service.ReceiptService;
+import com.trinca.chatseguro.service.UserDirectory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 
 import java.security.Principal;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/messages")
 public class MessageController {
 
     @Autowired private MessageService messageService;
-    @Autowired private UserService    userService;
+    @Autowired private UserDirectory  userDirectory;
+    @Autowired private ChatService    chatService;
+    @Autowired private ReceiptService receiptService;
 
     @GetMapping("/conversation/{otherUsername}")
     public List<MessageDto> conversation(
             Principal principal,
             @PathVariable String otherUsername
     ) throws Exception {
-        User me    = userService.findByUsername(principal.getName())
-                .orElseThrow(() -> new Exception("me not found"));
-        User other = userService.findByUsername(otherUsername)
-                .orElseThrow(() -> new Exception("other not found"));
-
-        return messageService.getConversation(me, other)
-                .stream()
-                .map(MessageDto::fromEntity)
-                .collect(Collectors.toList());
+        User me    = userDirectory.resolve(principal.getName());
+        User other = userDirectory.resolve(otherUsername);
+
+        return messageService.getConversation(me, other);
+    }
+
+    @GetMapping("/conversation/{otherUsername}/history")
+    public ConversationPageDto history(
+            Principal principal,
+            @PathVariable String otherUsername,
+            @RequestParam(required = false) String before,
+            @RequestParam(defaultValue = "50") int limit
+    ) throws Exception {
+        User me    = userDirectory.resolve(principal.getName());
+        User other = userDirectory.resolve(otherUsername);
+
+        return messageService.getConversationPage(me, other, before, limit);
+    }
+
+    // Até onde o outro lado recebeu/leu as mensagens que enviei nesta conversa
+    @GetMapping("/conversation/{otherUsername}/receipts")
+    public ReceiptDto receipts(Principal principal, @PathVariable String otherUsername) {
+        User me    = userDirectory.resolve(principal.getName());
+        User other = userDirectory.resolve(otherUsername);
+
+        return receiptService.receiptsOf(me, other);
+    }
+
+    // Inicia uma época: a chave AES embrulhada é enviada uma vez e as mensagens passam a usar o id
+    @PostMapping("/key-epochs")
+    @ResponseStatus(HttpStatus.CREATED)
+    public Map<String, Object> startKeyEpoch(@RequestBody Map<String, String> body, Principal principal) {
+        String receiver = body.get("receiver");
+        String encryptedAesKey = body.get("encryptedAesKey");
+        if (receiver == null || encryptedAesKey == null) {
+            throw new BadRequestException("Missing fields in key epoch body");
+        }
+
+        byte[] key;
+        try {
+            key = Base64.getDecoder().decode(encryptedAesKey);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid base64 in encryptedAesKey");
+        }
+        KeyEpoch epoch = chatService.startKeyEpoch(principal.getName(), receiver, key);
+        return Map.of("id", epoch.getId());
+    }
+
+    @GetMapping("/key-epochs/{id}")
+    public Map<String, Object> keyEpoch(@PathVariable UUID id, Principal principal) {
+        KeyEpoch epoch = chatService.getKeyEpoch(id, principal.getName());
+        return Map.of(
+                "id", epoch.getId(),
+                "encryptedAesKey", epoch.getWrappedKey()
+        );
     }
 }
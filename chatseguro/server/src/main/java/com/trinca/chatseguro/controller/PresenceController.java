@@ -0,0 +1,22 @@
+package com.trinca.chatseguro.controller;
+
+import com.trinca.chatseguro.presence.PresenceService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/presence")
+public class PresenceController {
+
+    @Autowired
+    private PresenceService presenceService;
+
+    // Consulta pontual: ?usernames=a,b,c -> { "a": true, "b": false, ... }
+    @GetMapping
+    public Map<String, Boolean> presence(@RequestParam Set<String> usernames) {
+        return presenceService.query(usernames);
+    }
+}
@@ -1,24 +1,69 @@
 package com.trinca.chatseguro.controller;
 
+import com.trinca.chatseguro.config.PayloadCodec;
+import com.trinca.chatseguro.config.PreparedPayload;
+import com.trinca.chatseguro.dto.MessageDto;
 import com.trinca.chatseguro.dto.SendMessageDto;
+import com.trinca.chatseguro.exception.BadRequestException;
+import com.trinca.chatseguro.fanout.MessageFanout;
 import com.trinca.chatseguro.model.Message;
+import com.trinca.chatseguro.presence.ActivitySignals;
+import com.trinca.chatseguro.presence.PresenceService;
+import com.trinca.chatseguro.model.User;
 import com.trinca.chatseguro.service.ChatService;
+import com.trinca.chatseguro.service.GroupService;
+import com.trinca.chatseguro.service.ReceiptService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 
 import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 @Controller
 public class WebSocketChatController {
 
+    private static final Logger log = LoggerFactory.getLogger(WebSocketChatController.class);
+
     @Autowired
     private ChatService chatService;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private MessageFanout messageFanout;
+
+    @Autowired
+    private PayloadCodec payloadCodec;
+
+    @Autowired
+    private PresenceService presenceService;
+
+    @Autowired
+    private ActivitySignals activitySignals;
+
+    @Autowired
+    private ReceiptService receiptService;
+
+    @Autowired
+    private GroupService groupService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Serialização + entrega ao broker local ou ao transporte entre nós (chat.send, stage=deliver)
+    private Timer deliverTimer;
+
+    @PostConstruct
+    void registerMeters() {
+        deliverTimer = ChatService.sendStage(meterRegistry, "deliver");
+    }
 
     @MessageMapping("/chat.sendMessage")
     public void sendMessage(@Payload SendMessageDto messageDto, Principal principal) throws Exception {
@@ -28,14 +73,82 @@ public class WebSocketChatController {
                 senderUsername,
                 messageDto.getReceiver(),
                 messageDto.getEncryptedAesKey(),
+                messageDto.getKeyEpochId(),
                 messageDto.getEncryptedMessage(),
                 messageDto.getIv()
         );
 
+        Timer.Sample sample = Timer.start(meterRegistry);
+        // Um único DTO serializado uma vez serve ao destinatário e ao eco do remetente
+        // (outros dispositivos dele e confirmação de id/seq para o cliente que enviou)
+        PreparedPayload payload = payloadCodec.prepare(MessageDto.fromEntity(savedMessage));
+
         String destination = "/topic/messages/" + messageDto.getReceiver();
+        log.debug("Enviando mensagem {} para o tópico {}", savedMessage.getId(), destination);
 
-        System.out.println("BACKEND: Enviando mensagem para o tópico: [" + destination + "]");
+        messageFanout.deliver(messageDto.getReceiver(), destination, payload);
+        messageFanout.deliver(senderUsername, "/topic/sent/" + senderUsername, payload);
+        sample.stop(deliverTimer);
+    }
+
+    // groupId + keyEpochId (época do grupo): uma linha gravada e o mesmo payload serializado
+    // entregue em /topic/messages/{membro} para cada membro
+    @MessageMapping("/group.sendMessage")
+    public void sendGroupMessage(@Payload SendMessageDto messageDto, Principal principal) throws Exception {
+        String senderUsername = principal.getName();
+        UUID groupId = messageDto.getGroupId();
+
+        Message savedMessage = groupService.send(
+                groupId,
+                senderUsername,
+                messageDto.getKeyEpochId(),
+                messageDto.getEncryptedMessage(),
+                messageDto.getIv()
+        );
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        PreparedPayload payload = payloadCodec.prepare(MessageDto.fromEntity(savedMessage));
+        log.debug("Enviando mensagem {} para o grupo {}", savedMessage.getId(), groupId);
+
+        for (User member : groupService.members(groupId)) {
+            if (!member.getUsername().equals(senderUsername)) {
+                messageFanout.deliver(member.getUsername(), "/topic/messages/" + member.getUsername(), payload);
+            }
+        }
+        messageFanout.deliver(senderUsername, "/topic/sent/" + senderUsername, payload);
+        sample.stop(deliverTimer);
+    }
+
+    // Lista de usernames a observar (substitui a anterior); o estado atual e as mudanças
+    // seguintes chegam em /topic/presence/{usuário}
+    @MessageMapping("/presence.watch")
+    public void watchPresence(@Payload List<String> usernames, Principal principal) {
+        presenceService.watch(principal.getName(), usernames);
+    }
+
+    // Sinal efêmero { "receiver": ..., "kind": "typing" }; nunca é gravado (ver ActivitySignals)
+    @MessageMapping("/chat.activity")
+    public void activity(@Payload Map<String, String> signal, Principal principal) {
+        activitySignals.signal(principal.getName(), signal.get("receiver"), signal.get("kind"));
+    }
+
+    // { "sender": ..., "delivered": seq, "read": seq }: marca as mensagens recebidas de sender até
+    // esses seqs; é agregado em memória e gravado em lote (ver ReceiptService)
+    @MessageMapping("/chat.receipt")
+    public void receipt(@Payload Map<String, Object> ack, Principal principal) {
+        if (!(ack.get("sender") instanceof String sender) || sender.isBlank()) {
+            throw new BadRequestException("Receipt sender is required");
+        }
+        receiptService.ack(principal.getName(), sender, seq(ack.get("delivered")), seq(ack.get("read")));
+    }
 
-        messagingTemplate.convertAndSend(destination, savedMessage);
+    private static long seq(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof Number n) {
+            return n.longValue();
+        }
+        throw new BadRequestException("Receipt seq must be a number");
     }
-}
\ No newline at end of file
+}
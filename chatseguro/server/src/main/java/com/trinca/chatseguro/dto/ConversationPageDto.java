@@ -0,0 +1,17 @@
+package com.trinca.chatseguro.dto;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class ConversationPageDto {
+    public List<MessageDto>  messages;   // em ordem cronológica
+    public Map<UUID, byte[]> keyEpochs;  // chave embrulhada de cada época usada na página, uma vez só
+    public String            nextCursor; // null quando não há mensagens mais antigas
+
+    public ConversationPageDto(List<MessageDto> messages, Map<UUID, byte[]> keyEpochs, String nextCursor) {
+        this.messages   = messages;
+        this.keyEpochs  = keyEpochs;
+        this.nextCursor = nextCursor;
+    }
+}
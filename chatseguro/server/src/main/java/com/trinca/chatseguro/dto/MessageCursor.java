@@ -0,0 +1,34 @@
+package com.trinca.chatseguro.dto;
+
+import com.trinca.chatseguro.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Posição opaca no histórico de uma conversa: (timestamp, id) da mensagem mais
+ * antiga já entregue ao cliente. Codificada em base64url para ir na query string.
+ */
+public record MessageCursor(LocalDateTime timestamp, UUID id) {
+
+    public String encode() {
+        String raw = timestamp + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static MessageCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            return new MessageCursor(
+                    LocalDateTime.parse(raw.substring(0, sep)),
+                    UUID.fromString(raw.substring(sep + 1))
+            );
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Invalid cursor: " + cursor);
+        }
+    }
+}
@@ -6,23 +6,51 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 public class MessageDto {
+    public static final String MAPPING = "MessageDto";
+
     public UUID          id;
     public String        senderUsername;
-    public String        receiverUsername;
-    public String        encryptedAesKey;
-    public String        encryptedMessage;
-    public String        iv;
+    public String        receiverUsername; // nulo em mensagens de grupo
+    public UUID          groupId;
+    public byte[]        encryptedAesKey; // nulo quando keyEpochId está presente
+    public UUID          keyEpochId;
+    public byte[]        encryptedMessage;
+    public byte[]        iv;
     public LocalDateTime timestamp;
+    public Long          seq;
+
+    public MessageDto() {
+    }
+
+    // Usado pelo JPQL "select new" do MessageRepository e pelas consultas nativas da caixa
+    // (MessageDto.MAPPING), tanto para conversas diretas quanto de grupo
+    public MessageDto(UUID id, String senderUsername, String receiverUsername, UUID groupId,
+                      byte[] encryptedAesKey, UUID keyEpochId, byte[] encryptedMessage, byte[] iv,
+                      LocalDateTime timestamp, Long seq) {
+        this.id               = id;
+        this.senderUsername   = senderUsername;
+        this.receiverUsername = receiverUsername;
+        this.groupId          = groupId;
+        this.encryptedAesKey  = encryptedAesKey;
+        this.keyEpochId       = keyEpochId;
+        this.encryptedMessage = encryptedMessage;
+        this.iv               = iv;
+        this.timestamp        = timestamp;
+        this.seq              = seq;
+    }
 
     public static MessageDto fromEntity(Message m) {
         MessageDto dto = new MessageDto();
         dto.id               = m.getId();
         dto.senderUsername   = m.getSender().getUsername();
-        dto.receiverUsername = m.getReceiver().getUsername();
+        dto.receiverUsername = m.getReceiver() != null ? m.getReceiver().getUsername() : null;
+        dto.groupId          = m.getGroupId();
         dto.encryptedAesKey  = m.getEncryptedAesKey();
+        dto.keyEpochId       = m.getKeyEpochId();
         dto.encryptedMessage = m.getEncryptedMessage();
         dto.iv               = m.getIv();
         dto.timestamp        = m.getTimestamp();
+        dto.seq              = m.getSeq();
         return dto;
     }
 }
@@ -0,0 +1,16 @@
+package com.trinca.chatseguro.dto;
+
+public class PublicKeyDto {
+    public String username;
+    public String publicKey;
+    public String etag;      // mesmo valor do ETag de GET /api/auth/public-key/{username}
+
+    public PublicKeyDto() {
+    }
+
+    public PublicKeyDto(String username, String publicKey, String etag) {
+        this.username  = username;
+        this.publicKey = publicKey;
+        this.etag      = etag;
+    }
+}
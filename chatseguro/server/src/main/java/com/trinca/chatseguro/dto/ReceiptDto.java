@@ -0,0 +1,16 @@
+package com.trinca.chatseguro.dto;
+
+// Maior seq entregue/lido pelo outro lado; toda mensagem com seq <= valor está no mesmo estado
+public class ReceiptDto {
+
+    public long delivered;
+    public long read;
+
+    public ReceiptDto() {
+    }
+
+    public ReceiptDto(long delivered, long read) {
+        this.delivered = delivered;
+        this.read = read;
+    }
+}
@@ -1,17 +1,29 @@
 package com.trinca.chatseguro.dto;
 
+import java.util.UUID;
+
 public class SendMessageDto {
 
-    private String receiver;
-    private String encryptedAesKey;
-    private String encryptedMessage;
-    private String iv;
+    private String receiver; // ou groupId, em /app/group.sendMessage
+    private UUID groupId;
+    private byte[] encryptedAesKey; // ou keyEpochId, de uma época criada antes
+    private UUID keyEpochId;
+    private byte[] encryptedMessage;
+    private byte[] iv;
+
+    public UUID getGroupId() {
+        return groupId;
+    }
+
+    public void setGroupId(UUID groupId) {
+        this.groupId = groupId;
+    }
 
-    public String getIv() {
+    public byte[] getIv() {
         return iv;
     }
 
-    public void setIv(String iv) {
+    public void setIv(byte[] iv) {
         this.iv = iv;
     }
 
@@ -23,19 +35,27 @@ public class SendMessageDto {
         this.receiver = receiver;
     }
 
-    public String getEncryptedAesKey() {
+    public byte[] getEncryptedAesKey() {
         return encryptedAesKey;
     }
 
-    public void setEncryptedAesKey(String encryptedAesKey) {
+    public void setEncryptedAesKey(byte[] encryptedAesKey) {
         this.encryptedAesKey = encryptedAesKey;
     }
 
-    public String getEncryptedMessage() {
+    public UUID getKeyEpochId() {
+        return keyEpochId;
+    }
+
+    public void setKeyEpochId(UUID keyEpochId) {
+        this.keyEpochId = keyEpochId;
+    }
+
+    public byte[] getEncryptedMessage() {
         return encryptedMessage;
     }
 
-    public void setEncryptedMessage(String encryptedMessage) {
+    public void setEncryptedMessage(byte[] encryptedMessage) {
         this.encryptedMessage = encryptedMessage;
     }
 
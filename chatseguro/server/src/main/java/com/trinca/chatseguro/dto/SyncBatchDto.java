@@ -0,0 +1,19 @@
+package com.trinca.chatseguro.dto;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class SyncBatchDto {
+    public List<MessageDto>  messages;   // recebidas e enviadas, em ordem de seq
+    public Map<UUID, byte[]> keyEpochs;  // chaves das épocas usadas no lote
+    public long              nextAfter;  // seq a enviar como "after" no próximo pedido (e a confirmar)
+    public boolean           hasMore;
+
+    public SyncBatchDto(List<MessageDto> messages, Map<UUID, byte[]> keyEpochs, long nextAfter, boolean hasMore) {
+        this.messages  = messages;
+        this.keyEpochs = keyEpochs;
+        this.nextAfter = nextAfter;
+        this.hasMore   = hasMore;
+    }
+}
@@ -0,0 +1,13 @@
+package com.trinca.chatseguro.event;
+
+import java.util.UUID;
+
+// Publicado quando alguém entra ou sai de um grupo, para que o cache de membros do GroupService
+// descarte a lista antiga. local = a mudança foi feita neste nó; o MessageFanout repassa esses
+// eventos aos outros nós, que os publicam com local=false.
+public record GroupMembershipChangedEvent(UUID groupId, boolean local) {
+
+    public GroupMembershipChangedEvent(UUID groupId) {
+        this(groupId, true);
+    }
+}
@@ -0,0 +1,7 @@
+package com.trinca.chatseguro.event;
+
+// Publicado quando a presença de um usuário pode ter mudado. local = true: a primeira sessão
+// dele abriu (online) ou a última fechou (offline) neste nó; local = false: mudança
+// aprendida de outro nó pelos frames de rota do fan-out.
+public record PresenceChangedEvent(String username, boolean online, boolean local) {
+}
@@ -0,0 +1,11 @@
+package com.trinca.chatseguro.event;
+
+// Publicado sempre que um usuário é criado ou tem senha/chave pública alterada,
+// para que os caches em memória descartem a versão antiga. local = a mudança foi feita
+// neste nó; o MessageFanout repassa esses eventos aos outros nós, que os publicam com local=false.
+public record UserChangedEvent(String username, boolean local) {
+
+    public UserChangedEvent(String username) {
+        this(username, true);
+    }
+}
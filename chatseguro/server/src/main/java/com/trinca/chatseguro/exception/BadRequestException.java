@@ -0,0 +1,9 @@
+package com.trinca.chatseguro.exception;
+
+// 400: entrada inválida do cliente. Só esta exceção vira 400 com a mensagem devolvida; uma
+// IllegalArgumentException qualquer (JDK, Spring, Jackson) continua sendo erro interno
+public class BadRequestException extends IllegalArgumentException {
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.trinca.chatseguro.exception;
+
+// 503: recurso interno saturado (ex.: fila de hashing de senha cheia); falha rápido em vez de enfileirar
+public class ServiceBusyException extends RuntimeException {
+    public ServiceBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,17 @@
+package com.trinca.chatseguro.exception;
+
+import java.time.Duration;
+
+// 429: o cliente passou do limite e deve tentar de novo depois de retryAfter
+public class TooManyRequestsException extends RuntimeException {
+    private final Duration retryAfter;
+
+    public TooManyRequestsException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
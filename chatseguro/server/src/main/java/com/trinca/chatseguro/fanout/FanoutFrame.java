@@ -0,0 +1,42 @@
+package com.trinca.chatseguro.fanout;
+
+import java.util.UUID;
+
+// Unidade trocada entre os nós. "payload" é o conteúdo já serializado em CBOR; o nó de
+// destino só converte para JSON se tiver assinantes JSON.
+public record FanoutFrame(Type type, String node, String user, String destination, byte[] payload) {
+
+    public enum Type {
+        HELLO,      // primeiro frame de cada conexão, identifica o nó; payload = nonce (+ hmac na resposta)
+        AUTH,       // resposta ao desafio do HELLO; payload = hmac
+        ROUTE_UP,   // "user" passou a ter sessão em "node"
+        ROUTE_DOWN, // "user" não tem mais sessão em "node"
+        DELIVER,    // entregar "payload" em "destination" para "user"
+        USER_CHANGED, // senha/chave de "user" mudou: descartar caches
+        GROUP_CHANGED // membros do grupo cujo id está em "user" mudaram: descartar o cache de membros
+    }
+
+    public static FanoutFrame hello(String node, byte[] handshake) {
+        return new FanoutFrame(Type.HELLO, node, null, null, handshake);
+    }
+
+    public static FanoutFrame auth(String node, byte[] mac) {
+        return new FanoutFrame(Type.AUTH, node, null, null, mac);
+    }
+
+    public static FanoutFrame route(String node, String user, boolean up) {
+        return new FanoutFrame(up ? Type.ROUTE_UP : Type.ROUTE_DOWN, node, user, null, null);
+    }
+
+    public static FanoutFrame userChanged(String node, String user) {
+        return new FanoutFrame(Type.USER_CHANGED, node, user, null, null);
+    }
+
+    public static FanoutFrame groupChanged(String node, UUID groupId) {
+        return new FanoutFrame(Type.GROUP_CHANGED, node, groupId.toString(), null, null);
+    }
+
+    public static FanoutFrame deliver(String node, String user, String destination, byte[] payload) {
+        return new FanoutFrame(Type.DELIVER, node, user, destination, payload);
+    }
+}
@@ -0,0 +1,26 @@
+package com.trinca.chatseguro.fanout;
+
+// Transporte entre os nós do cluster. A implementação é escolhida por chat.fanout.transport.
+public interface FanoutTransport {
+
+    void start(String nodeId, Listener listener);
+
+    void stop();
+
+    // Envia para um nó específico; descarta o frame se o nó não estiver alcançável
+    void send(String node, FanoutFrame frame);
+
+    // Envia para todos os nós conectados
+    void broadcast(FanoutFrame frame);
+
+    interface Listener {
+
+        void onFrame(FanoutFrame frame);
+
+        // Conexão de saída com o nó estabelecida: momento de anunciar os usuários locais
+        void onPeerConnected(String node);
+
+        // O nó deixou de enviar frames: suas rotas devem ser descartadas
+        void onPeerDisconnected(String node);
+    }
+}
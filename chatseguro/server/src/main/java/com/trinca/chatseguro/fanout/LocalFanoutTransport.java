@@ -0,0 +1,26 @@
+package com.trinca.chatseguro.fanout;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Instância única: não há outros nós, todas as entregas são locais.
+@Component
+@ConditionalOnProperty(name = "chat.fanout.transport", havingValue = "local", matchIfMissing = true)
+public class LocalFanoutTransport implements FanoutTransport {
+
+    @Override
+    public void start(String nodeId, Listener listener) {
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public void send(String node, FanoutFrame frame) {
+    }
+
+    @Override
+    public void broadcast(FanoutFrame frame) {
+    }
+}
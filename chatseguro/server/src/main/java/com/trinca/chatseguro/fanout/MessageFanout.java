@@ -0,0 +1,191 @@
+package com.trinca.chatseguro.fanout;
+
+import com.trinca.chatseguro.config.PayloadCodec;
+import com.trinca.chatseguro.config.PreparedPayload;
+import com.trinca.chatseguro.event.PresenceChangedEvent;
+import com.trinca.chatseguro.event.GroupMembershipChangedEvent;
+import com.trinca.chatseguro.event.UserChangedEvent;
+import com.trinca.chatseguro.presence.PresenceRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeType;
+
+import java.util.Set;
+import java.util.UUID;
+
+// Entrega frames para um usuário independente do nó em que ele está conectado: o broker
+// local recebe o frame só se alguma sessão do usuário estiver inscrita no destino
+// (PresenceRegistry), e cada nó remoto que hospeda o usuário recebe um frame DELIVER.
+// Usuário offline em todo o cluster = nada é serializado nem enviado.
+//
+// Cada destino "/topic/x" tem uma variante binária "/topic/cbor/x" com o mesmo conteúdo em
+// CBOR; o cliente escolhe o formato pelo destino em que se inscreve.
+@Service
+public class MessageFanout implements FanoutTransport.Listener {
+
+    private static final String TOPIC_PREFIX = "/topic/";
+    private static final String CBOR_TOPIC_PREFIX = "/topic/cbor/";
+
+    private final FanoutTransport transport;
+    private final UserRoutingTable routes;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final PresenceRegistry presence;
+    private final ApplicationEventPublisher events;
+    private final PayloadCodec payloadCodec;
+    private final String nodeId;
+
+    public MessageFanout(FanoutTransport transport,
+                         UserRoutingTable routes,
+                         SimpMessagingTemplate messagingTemplate,
+                         PresenceRegistry presence,
+                         ApplicationEventPublisher events,
+                         PayloadCodec payloadCodec,
+                         @Value("${chat.fanout.node-id:}") String nodeId) {
+        this.transport = transport;
+        this.routes = routes;
+        this.messagingTemplate = messagingTemplate;
+        this.presence = presence;
+        this.events = events;
+        this.payloadCodec = payloadCodec;
+        this.nodeId = nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+    }
+
+    @PostConstruct
+    void start() {
+        transport.start(nodeId, this);
+    }
+
+    @PreDestroy
+    void stop() {
+        transport.stop();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void deliver(String user, String destination, Object payload) {
+        deliver(user, destination, payloadCodec.prepare(payload));
+    }
+
+    // Cada formato é serializado no máximo uma vez por payload, e só se houver quem o receba
+    public void deliver(String user, String destination, PreparedPayload payload) {
+        if (presence.isSubscribed(user, destination)) {
+            sendLocal(destination, payload.json(), PayloadCodec.JSON);
+        }
+
+        String binaryDestination = binaryDestination(destination);
+        Set<String> nodes = routes.remoteNodes(user);
+        boolean localBinary = binaryDestination != null && presence.isSubscribed(user, binaryDestination);
+        if (!localBinary && nodes.isEmpty()) {
+            return;
+        }
+
+        byte[] cbor = payload.cbor();
+        if (localBinary) {
+            sendLocal(binaryDestination, cbor, PayloadCodec.CBOR);
+        }
+        if (!nodes.isEmpty()) {
+            FanoutFrame frame = FanoutFrame.deliver(nodeId, user, destination, cbor);
+            for (String node : nodes) {
+                transport.send(node, frame);
+            }
+        }
+    }
+
+    private void deliverRemote(FanoutFrame frame) {
+        String destination = frame.destination();
+        if (presence.isSubscribed(frame.user(), destination)) {
+            sendLocal(destination, payloadCodec.cborToJson(frame.payload()), PayloadCodec.JSON);
+        }
+
+        String binaryDestination = binaryDestination(destination);
+        if (binaryDestination != null && presence.isSubscribed(frame.user(), binaryDestination)) {
+            sendLocal(binaryDestination, frame.payload(), PayloadCodec.CBOR);
+        }
+    }
+
+    private void sendLocal(String destination, byte[] payload, MimeType contentType) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(contentType);
+        accessor.setLeaveMutable(true);
+        messagingTemplate.send(destination, MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+    }
+
+    private static String binaryDestination(String destination) {
+        if (!destination.startsWith(TOPIC_PREFIX) || destination.startsWith(CBOR_TOPIC_PREFIX)) {
+            return null;
+        }
+        return CBOR_TOPIC_PREFIX + destination.substring(TOPIC_PREFIX.length());
+    }
+
+    // Primeira/última sessão local de um usuário: avisa os outros nós para rotearem até aqui
+    @EventListener
+    public void onPresenceChanged(PresenceChangedEvent event) {
+        if (event.local()) {
+            transport.broadcast(FanoutFrame.route(nodeId, event.username(), event.online()));
+        }
+    }
+
+    // Caches de senha/chave pública (SecurityUserDetailsService, PublicKeyDirectory, ...) dos outros
+    // nós; um nó desconectado perde o aviso e fica limitado ao TTL do próprio cache
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.local()) {
+            transport.broadcast(FanoutFrame.userChanged(nodeId, event.username()));
+        }
+    }
+
+    // Cache de membros do GroupService: quem saiu de um grupo para de receber as mensagens dele em
+    // todos os nós, não só no que fez a mudança
+    @EventListener
+    public void onGroupMembershipChanged(GroupMembershipChangedEvent event) {
+        if (event.local()) {
+            transport.broadcast(FanoutFrame.groupChanged(nodeId, event.groupId()));
+        }
+    }
+
+    @Override
+    public void onFrame(FanoutFrame frame) {
+        switch (frame.type()) {
+            case ROUTE_UP -> {
+                if (routes.addRemote(frame.user(), frame.node())) {
+                    events.publishEvent(new PresenceChangedEvent(frame.user(), true, false));
+                }
+            }
+            case ROUTE_DOWN -> {
+                if (routes.removeRemote(frame.user(), frame.node())) {
+                    events.publishEvent(new PresenceChangedEvent(frame.user(), false, false));
+                }
+            }
+            case DELIVER -> deliverRemote(frame);
+            case USER_CHANGED -> events.publishEvent(new UserChangedEvent(frame.user(), false));
+            case GROUP_CHANGED -> events.publishEvent(
+                    new GroupMembershipChangedEvent(UUID.fromString(frame.user()), false));
+            case HELLO, AUTH -> {
+            }
+        }
+    }
+
+    @Override
+    public void onPeerConnected(String node) {
+        for (String user : presence.localUsers()) {
+            transport.send(node, FanoutFrame.route(nodeId, user, true));
+        }
+    }
+
+    @Override
+    public void onPeerDisconnected(String node) {
+        for (String user : routes.removeNode(node)) {
+            events.publishEvent(new PresenceChangedEvent(user, false, false));
+        }
+    }
+}
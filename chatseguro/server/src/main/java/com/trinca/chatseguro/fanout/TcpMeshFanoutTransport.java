@@ -0,0 +1,386 @@
+package com.trinca.chatseguro.fanout;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trinca.chatseguro.config.PayloadCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+
+// Malha TCP entre os nós: cada nó escuta em chat.fanout.tcp.bind-address:port e abre uma
+// conexão de saída para cada endereço de chat.fanout.tcp.peers. Frames são CBOR com prefixo de
+// tamanho (int32). Conexões de saída só enviam; as de entrada só recebem.
+//
+// Handshake com o segredo compartilhado (chat.fanout.tcp.secret), desafio-resposta HMAC-SHA256:
+//   saída   -> HELLO(nó, nonceA)
+//   entrada -> HELLO(nó, nonceB + hmac("accept", nó, nonceA, nonceB))
+//   saída   -> AUTH(hmac("connect", nó, nonceA, nonceB))
+// Sem o segredo nenhum frame é aceito. O tráfego em si não é cifrado: em rede não confiável
+// use bind-address numa interface privada/VPN.
+//
+// Cada conexão de saída tem uma fila limitada drenada por uma thread própria; quem envia só
+// enfileira, então um nó lento nunca segura os demais. Fila cheia = o nó é desconectado.
+@Component
+@ConditionalOnProperty(name = "chat.fanout.transport", havingValue = "tcp")
+public class TcpMeshFanoutTransport implements FanoutTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(TcpMeshFanoutTransport.class);
+
+    private static final int MAX_FRAME_BYTES = 1 << 20;
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+    private static final int NONCE_BYTES = 16;
+    private static final int MAC_BYTES = 32;
+    private static final byte[] STOP = new byte[0];
+
+    private final ObjectMapper objectMapper;
+    private final String bindAddress;
+    private final int port;
+    private final List<InetSocketAddress> peers;
+    private final Duration reconnectInterval;
+    private final SecretKeySpec secret;
+    private final int queueSize;
+    private final SecureRandom random = new SecureRandom();
+
+    private final Map<InetSocketAddress, PeerLink> linksByAddress = new ConcurrentHashMap<>();
+    private final Map<String, PeerLink> linksByNode = new ConcurrentHashMap<>();
+    private final Set<Socket> inboundSockets = ConcurrentHashMap.newKeySet();
+    // Conexão de entrada autenticada atual de cada nó; uma reconexão substitui a anterior
+    private final Map<String, Socket> inboundByNode = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+    private String nodeId;
+    private Listener listener;
+    private ServerSocket server;
+    private ScheduledExecutorService reconnector;
+
+    @Autowired
+    public TcpMeshFanoutTransport(PayloadCodec payloadCodec,
+                                  @Value("${chat.fanout.tcp.bind-address:127.0.0.1}") String bindAddress,
+                                  @Value("${chat.fanout.tcp.port:9101}") int port,
+                                  @Value("${chat.fanout.tcp.peers:}") List<String> peers,
+                                  @Value("${chat.fanout.tcp.reconnect-interval:2s}") Duration reconnectInterval,
+                                  @Value("${chat.fanout.tcp.secret:}") String secret,
+                                  @Value("${chat.fanout.tcp.queue-size:10000}") int queueSize) {
+        this(payloadCodec.getCborMapper(), bindAddress, port, peers, reconnectInterval, secret, queueSize);
+    }
+
+    TcpMeshFanoutTransport(ObjectMapper objectMapper, String bindAddress, int port, List<String> peers,
+                           Duration reconnectInterval, String secret, int queueSize) {
+        if (secret == null || secret.length() < 16) {
+            throw new IllegalArgumentException("chat.fanout.tcp.secret must have at least 16 characters");
+        }
+        this.objectMapper = objectMapper;
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.peers = peers.stream()
+                .filter(p -> !p.isBlank())
+                .map(TcpMeshFanoutTransport::parseAddress)
+                .toList();
+        this.reconnectInterval = reconnectInterval;
+        this.secret = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        this.queueSize = queueSize;
+    }
+
+    @Override
+    public void start(String nodeId, Listener listener) {
+        this.nodeId = nodeId;
+        this.listener = listener;
+        try {
+            server = new ServerSocket(port, 50, InetAddress.getByName(bindAddress));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not listen for fan-out peers on " + bindAddress + ":" + port, e);
+        }
+        running = true;
+
+        Thread.ofVirtual().name("fanout-accept").start(this::acceptLoop);
+
+        reconnector = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("fanout-connect")
+                .daemon(true)
+                .factory());
+        reconnector.scheduleWithFixedDelay(this::connectMissingPeers,
+                0, reconnectInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (reconnector != null) {
+            reconnector.shutdownNow();
+        }
+        closeQuietly(server);
+        linksByAddress.values().forEach(this::drop);
+        inboundSockets.forEach(TcpMeshFanoutTransport::closeQuietly);
+    }
+
+    public int getLocalPort() {
+        return server.getLocalPort();
+    }
+
+    @Override
+    public void send(String node, FanoutFrame frame) {
+        PeerLink link = linksByNode.get(node);
+        if (link != null) {
+            enqueue(link, frame);
+        }
+    }
+
+    @Override
+    public void broadcast(FanoutFrame frame) {
+        for (PeerLink link : linksByNode.values()) {
+            enqueue(link, frame);
+        }
+    }
+
+    private void enqueue(PeerLink link, FanoutFrame frame) {
+        byte[] bytes;
+        try {
+            bytes = objectMapper.writeValueAsBytes(frame);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!link.queue().offer(bytes)) {
+            log.warn("Fan-out queue to node {} is full, dropping the link", link.node());
+            drop(link);
+        }
+    }
+
+    // Única thread que escreve no socket de saída; flush só quando a fila esvazia
+    private void drain(PeerLink link) {
+        try {
+            while (true) {
+                byte[] bytes = link.queue().take();
+                if (bytes == STOP) {
+                    return;
+                }
+                writeBytes(link.out(), bytes);
+                if (link.queue().isEmpty()) {
+                    link.out().flush();
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Dropping fan-out link to node {}: {}", link.node(), e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            drop(link);
+        }
+    }
+
+    private void writeNow(DataOutputStream out, FanoutFrame frame) throws IOException {
+        writeBytes(out, objectMapper.writeValueAsBytes(frame));
+        out.flush();
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private FanoutFrame read(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length <= 0 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Invalid fan-out frame length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return objectMapper.readValue(bytes, FanoutFrame.class);
+    }
+
+    private void connectMissingPeers() {
+        for (InetSocketAddress address : peers) {
+            if (running && !linksByAddress.containsKey(address)) {
+                connect(address);
+            }
+        }
+    }
+
+    private void connect(InetSocketAddress address) {
+        Socket socket = new Socket();
+        try {
+            socket.connect(address, CONNECT_TIMEOUT_MS);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(CONNECT_TIMEOUT_MS);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            byte[] nonce = nonce();
+            writeNow(out, FanoutFrame.hello(nodeId, nonce));
+            FanoutFrame reply = read(in);
+            if (reply.type() != FanoutFrame.Type.HELLO || reply.node() == null || reply.payload() == null
+                    || reply.payload().length != NONCE_BYTES + MAC_BYTES) {
+                throw new IOException("Unexpected handshake from " + address);
+            }
+            byte[] peerNonce = Arrays.copyOf(reply.payload(), NONCE_BYTES);
+            byte[] peerMac = Arrays.copyOfRange(reply.payload(), NONCE_BYTES, NONCE_BYTES + MAC_BYTES);
+            if (!MessageDigest.isEqual(peerMac, mac("accept", reply.node(), nonce, peerNonce))) {
+                throw new IOException("Fan-out peer " + address + " failed authentication");
+            }
+            writeNow(out, FanoutFrame.auth(nodeId, mac("connect", nodeId, nonce, peerNonce)));
+            socket.setSoTimeout(0);
+
+            PeerLink link = new PeerLink(reply.node(), address, socket, out, new ArrayBlockingQueue<>(queueSize));
+            linksByAddress.put(address, link);
+            linksByNode.put(link.node(), link);
+            Thread.ofVirtual().name("fanout-writer-" + link.node()).start(() -> drain(link));
+            Thread.ofVirtual().name("fanout-link-" + link.node()).start(() -> watch(link, in));
+
+            log.info("Fan-out link to node {} at {} established", link.node(), address);
+            listener.onPeerConnected(link.node());
+        } catch (IOException e) {
+            log.debug("Fan-out peer {} unreachable: {}", address, e.getMessage());
+            closeQuietly(socket);
+        }
+    }
+
+    // O lado de entrada nunca escreve depois do HELLO; a leitura só serve para detectar o fechamento
+    private void watch(PeerLink link, DataInputStream in) {
+        try {
+            while (in.read() != -1) {
+                // ignora
+            }
+        } catch (IOException ignored) {
+            // conexão encerrada
+        } finally {
+            drop(link);
+        }
+    }
+
+    private void drop(PeerLink link) {
+        if (link.address() != null) {
+            linksByAddress.remove(link.address(), link);
+        }
+        if (link.node() != null) {
+            linksByNode.remove(link.node(), link);
+        }
+        // Fecha o socket (desbloqueia um write parado) e acorda o writer se ele estiver em take()
+        closeQuietly(link.socket());
+        link.queue().clear();
+        link.queue().offer(STOP);
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                inboundSockets.add(socket);
+                Thread.ofVirtual().name("fanout-inbound").start(() -> serve(socket));
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("Fan-out accept failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        String peerNode = null;
+        try {
+            socket.setSoTimeout(CONNECT_TIMEOUT_MS);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            FanoutFrame hello = read(in);
+            if (hello.type() != FanoutFrame.Type.HELLO || hello.node() == null
+                    || hello.payload() == null || hello.payload().length != NONCE_BYTES) {
+                return;
+            }
+            byte[] nonce = nonce();
+            byte[] proof = mac("accept", nodeId, hello.payload(), nonce);
+            byte[] payload = Arrays.copyOf(nonce, NONCE_BYTES + MAC_BYTES);
+            System.arraycopy(proof, 0, payload, NONCE_BYTES, MAC_BYTES);
+            writeNow(out, FanoutFrame.hello(nodeId, payload));
+
+            FanoutFrame auth = read(in);
+            if (auth.type() != FanoutFrame.Type.AUTH || auth.payload() == null
+                    || !MessageDigest.isEqual(auth.payload(), mac("connect", hello.node(), hello.payload(), nonce))) {
+                log.warn("Rejected fan-out connection from {}: authentication failed", socket.getRemoteSocketAddress());
+                return;
+            }
+            socket.setSoTimeout(0);
+            peerNode = hello.node();
+            closeQuietly(inboundByNode.put(peerNode, socket));
+
+            while (running) {
+                FanoutFrame frame = read(in);
+                // O nó autenticado no handshake é a única origem aceita: um peer não anuncia rotas
+                // nem entrega frames em nome de outro nó
+                if (!peerNode.equals(frame.node()) || frame.type() == FanoutFrame.Type.HELLO
+                        || frame.type() == FanoutFrame.Type.AUTH) {
+                    log.warn("Dropping fan-out {} frame claiming node {} on the link from {}",
+                            frame.type(), frame.node(), peerNode);
+                    continue;
+                }
+                listener.onFrame(frame);
+            }
+        } catch (IOException e) {
+            // conexão encerrada pelo outro nó (ou substituída por uma mais nova)
+        } finally {
+            inboundSockets.remove(socket);
+            closeQuietly(socket);
+            // Só a conexão atual derruba as rotas do nó; uma substituída não mexe na que a trocou
+            if (peerNode != null && inboundByNode.remove(peerNode, socket)) {
+                listener.onPeerDisconnected(peerNode);
+            }
+        }
+    }
+
+    private byte[] nonce() {
+        byte[] nonce = new byte[NONCE_BYTES];
+        random.nextBytes(nonce);
+        return nonce;
+    }
+
+    private byte[] mac(String role, String node, byte[] connectorNonce, byte[] acceptorNonce) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(secret);
+            mac.update((role + ":" + node + ":").getBytes(StandardCharsets.UTF_8));
+            mac.update(connectorNonce);
+            mac.update(acceptorNonce);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static InetSocketAddress parseAddress(String peer) {
+        String value = peer.trim();
+        int sep = value.lastIndexOf(':');
+        return new InetSocketAddress(value.substring(0, sep), Integer.parseInt(value.substring(sep + 1)));
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            if (closeable != null) {
+                closeable.close();
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    private record PeerLink(String node, InetSocketAddress address, Socket socket, DataOutputStream out,
+                            BlockingQueue<byte[]> queue) {
+    }
+}
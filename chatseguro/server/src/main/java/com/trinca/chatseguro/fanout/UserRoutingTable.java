@@ -0,0 +1,57 @@
+package com.trinca.chatseguro.fanout;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Em quais outros nós cada usuário tem sessão, aprendido pelos frames ROUTE_UP/ROUTE_DOWN.
+// As sessões locais ficam no PresenceRegistry.
+@Component
+public class UserRoutingTable {
+
+    private final Map<String, Set<String>> remoteNodes = new ConcurrentHashMap<>();
+
+    // Retorna true quando o usuário passou a ter sessão em algum outro nó
+    public boolean addRemote(String user, String node) {
+        boolean[] first = new boolean[1];
+        remoteNodes.compute(user, (k, nodes) -> {
+            if (nodes == null) {
+                nodes = ConcurrentHashMap.newKeySet();
+                first[0] = true;
+            }
+            nodes.add(node);
+            return nodes;
+        });
+        return first[0];
+    }
+
+    // Retorna true quando o usuário deixou de ter sessão em qualquer outro nó
+    public boolean removeRemote(String user, String node) {
+        boolean[] gone = new boolean[1];
+        remoteNodes.computeIfPresent(user, (k, nodes) -> {
+            nodes.remove(node);
+            gone[0] = nodes.isEmpty();
+            return gone[0] ? null : nodes;
+        });
+        return gone[0];
+    }
+
+    // Usuários que ficaram sem nenhum nó remoto com a queda deste
+    public List<String> removeNode(String node) {
+        List<String> gone = new ArrayList<>();
+        for (String user : remoteNodes.keySet()) {
+            if (removeRemote(user, node)) {
+                gone.add(user);
+            }
+        }
+        return gone;
+    }
+
+    public Set<String> remoteNodes(String user) {
+        return remoteNodes.getOrDefault(user, Set.of());
+    }
+}
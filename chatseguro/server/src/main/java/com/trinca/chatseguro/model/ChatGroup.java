@@ -0,0 +1,52 @@
+package com.trinca.chatseguro.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.Size;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Conversa em grupo; o id também é a conversation_key das mensagens do grupo
+@Entity
+@Table(name = "chat_groups")
+public class ChatGroup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(nullable = false, length = 100)
+    @Size(max = 100)
+    private String name;
+
+    @Column(name = "created_by", nullable = false)
+    private UUID createdBy;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public ChatGroup() {
+    }
+
+    public ChatGroup(String name, User creator, LocalDateTime createdAt) {
+        this.name = name;
+        this.createdBy = creator.getId();
+        this.createdAt = createdAt;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public UUID getCreatedBy() {
+        return createdBy;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
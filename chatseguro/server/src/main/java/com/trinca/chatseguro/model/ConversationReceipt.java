@@ -0,0 +1,57 @@
+package com.trinca.chatseguro.model;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Marca d'água de entrega/leitura de um participante em uma conversa (ver ReceiptService)
+@Entity
+@Table(name = "conversation_receipts")
+@IdClass(ConversationReceipt.Key.class)
+public class ConversationReceipt {
+
+    @Id
+    @Column(name = "conversation_key")
+    private UUID conversationKey;
+
+    @Id
+    @Column(name = "reader_id")
+    private UUID readerId;
+
+    @Column(name = "delivered_seq", nullable = false)
+    private long deliveredSeq;
+
+    @Column(name = "read_seq", nullable = false)
+    private long readSeq;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public ConversationReceipt() {
+    }
+
+    public UUID getConversationKey() {
+        return conversationKey;
+    }
+
+    public UUID getReaderId() {
+        return readerId;
+    }
+
+    public long getDeliveredSeq() {
+        return deliveredSeq;
+    }
+
+    public long getReadSeq() {
+        return readSeq;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public record Key(UUID conversationKey, UUID readerId) implements Serializable {
+    }
+}
@@ -0,0 +1,50 @@
+package com.trinca.chatseguro.model;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Última posição (seq) da caixa que um dispositivo do usuário confirmou ter recebido
+@Entity
+@Table(name = "device_acks")
+@IdClass(DeviceAck.Key.class)
+public class DeviceAck {
+
+    @Id
+    @Column(name = "user_id")
+    private UUID userId;
+
+    @Id
+    @Column(name = "device_id", length = 64)
+    private String deviceId;
+
+    @Column(name = "last_seq", nullable = false)
+    private long lastSeq;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public DeviceAck() {
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public record Key(UUID userId, String deviceId) implements Serializable {
+    }
+}
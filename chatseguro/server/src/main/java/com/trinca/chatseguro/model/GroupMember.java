@@ -0,0 +1,50 @@
+package com.trinca.chatseguro.model;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(name = "group_members", indexes = {
+        @Index(name = "idx_group_members_user", columnList = "user_id")
+})
+@IdClass(GroupMember.Key.class)
+public class GroupMember {
+
+    @Id
+    @Column(name = "group_id")
+    private UUID groupId;
+
+    @Id
+    @Column(name = "user_id")
+    private UUID userId;
+
+    @Column(name = "joined_at", nullable = false)
+    private LocalDateTime joinedAt;
+
+    public GroupMember() {
+    }
+
+    public GroupMember(UUID groupId, UUID userId, LocalDateTime joinedAt) {
+        this.groupId = groupId;
+        this.userId = userId;
+        this.joinedAt = joinedAt;
+    }
+
+    public UUID getGroupId() {
+        return groupId;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public LocalDateTime getJoinedAt() {
+        return joinedAt;
+    }
+
+    public record Key(UUID groupId, UUID userId) implements Serializable {
+    }
+}
@@ -0,0 +1,89 @@
+package com.trinca.chatseguro.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.Size;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Chave AES de sessão embrulhada com a RSA do destinatário, guardada uma vez por
+// conversa e direção; as mensagens da época só referenciam o id. Em grupos (groupId)
+// não há destinatário: a chave fica embrulhada uma vez por membro em KeyEpochMember.
+@Entity
+@Table(name = "key_epochs", indexes = {
+        @Index(name = "idx_key_epochs_conversation", columnList = "conversation_key, created_at")
+})
+public class KeyEpoch {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "conversation_key", nullable = false)
+    private UUID conversationKey;
+
+    @Column(name = "sender_id", nullable = false)
+    private UUID senderId;
+
+    @Column(name = "receiver_id")
+    private UUID receiverId;
+
+    @Column(name = "group_id")
+    private UUID groupId;
+
+    @Size(max = 750)
+    private byte[] wrappedKey; // AES cifrada com RSA; nulo em épocas de grupo
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public KeyEpoch() {
+    }
+
+    public KeyEpoch(User sender, User receiver, byte[] wrappedKey, LocalDateTime createdAt) {
+        this.conversationKey = Message.conversationKey(sender, receiver);
+        this.senderId = sender.getId();
+        this.receiverId = receiver.getId();
+        this.wrappedKey = wrappedKey;
+        this.createdAt = createdAt;
+    }
+
+    public KeyEpoch(User sender, UUID groupId, LocalDateTime createdAt) {
+        this.conversationKey = groupId;
+        this.senderId = sender.getId();
+        this.groupId = groupId;
+        this.createdAt = createdAt;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public UUID getConversationKey() {
+        return conversationKey;
+    }
+
+    public UUID getSenderId() {
+        return senderId;
+    }
+
+    public UUID getReceiverId() {
+        return receiverId;
+    }
+
+    public UUID getGroupId() {
+        return groupId;
+    }
+
+    public byte[] getWrappedKey() {
+        return wrappedKey;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public boolean hasParticipant(UUID userId) {
+        return senderId.equals(userId) || userId.equals(receiverId);
+    }
+}
@@ -0,0 +1,44 @@
+package com.trinca.chatseguro.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.Size;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+// Chave AES de uma época de grupo embrulhada com a RSA de um membro
+@Entity
+@Table(name = "key_epoch_members")
+@IdClass(KeyEpochMember.Key.class)
+public class KeyEpochMember {
+
+    @Id
+    @Column(name = "epoch_id")
+    private UUID epochId;
+
+    @Id
+    @Column(name = "member_id")
+    private UUID memberId;
+
+    @Column(name = "wrapped_key", nullable = false)
+    @Size(max = 750)
+    private byte[] wrappedKey;
+
+    public KeyEpochMember() {
+    }
+
+    public UUID getEpochId() {
+        return epochId;
+    }
+
+    public UUID getMemberId() {
+        return memberId;
+    }
+
+    public byte[] getWrappedKey() {
+        return wrappedKey;
+    }
+
+    public record Key(UUID epochId, UUID memberId) implements Serializable {
+    }
+}
@@ -1,53 +1,105 @@
 package com.trinca.chatseguro.model;
 
+import com.trinca.chatseguro.dto.MessageDto;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Size;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+        @Index(name = "idx_messages_conversation", columnList = "conversation_key, timestamp, id"),
+        @Index(name = "idx_messages_receiver", columnList = "receiver_id, timestamp"),
+        @Index(name = "idx_messages_sender", columnList = "sender_id, timestamp"),
+        @Index(name = "idx_messages_receiver_seq", columnList = "receiver_id, seq"),
+        @Index(name = "idx_messages_sender_seq", columnList = "sender_id, seq"),
+        @Index(name = "idx_messages_group_seq", columnList = "group_id, seq")
+})
+// Mapeamento das consultas nativas que devolvem MessageDto direto, sem carregar entidades
+@SqlResultSetMapping(name = MessageDto.MAPPING, classes = @ConstructorResult(
+        targetClass = MessageDto.class,
+        columns = {
+                @ColumnResult(name = "id", type = UUID.class),
+                @ColumnResult(name = "sender_username", type = String.class),
+                @ColumnResult(name = "receiver_username", type = String.class),
+                @ColumnResult(name = "group_id", type = UUID.class),
+                @ColumnResult(name = "encrypted_aes_key", type = byte[].class),
+                @ColumnResult(name = "key_epoch_id", type = UUID.class),
+                @ColumnResult(name = "encrypted_message", type = byte[].class),
+                @ColumnResult(name = "iv", type = byte[].class),
+                @ColumnResult(name = "timestamp", type = LocalDateTime.class),
+                @ColumnResult(name = "seq", type = Long.class)
+        }))
 public class Message {
 
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
 
+    // Mesmo valor para as duas direções da conversa, ver conversationKey(UUID, UUID)
+    @Column(name = "conversation_key", nullable = false)
+    private UUID conversationKey;
+
     @ManyToOne
     @JoinColumn(name = "sender_id", nullable = false)
     private User sender;
 
+    // Exatamente um de receiver/groupId; mensagens de grupo são uma linha só para todos os membros
     @ManyToOne
-    @JoinColumn(name = "receiver_id", nullable = false)
+    @JoinColumn(name = "receiver_id")
     private User receiver;
 
-    @Column(nullable = false)
-    @Size(max = 1000)
-    private String encryptedAesKey; // AES cifrada com RSA
+    @Column(name = "group_id")
+    private UUID groupId;
+
+    // Campos binários (bytea); no JSON continuam aparecendo como base64
+    // Nulo quando a mensagem usa a chave de uma época (keyEpochId)
+    @Size(max = 750)
+    private byte[] encryptedAesKey; // AES cifrada com RSA
+
+    @Column(name = "key_epoch_id")
+    private UUID keyEpochId;
 
     @Column(nullable = false)
-    @Size(max = 8000)
-    private String encryptedMessage; // Mensagem cifrada com AES
+    @Size(max = 6000)
+    private byte[] encryptedMessage; // Mensagem cifrada com AES
 
 //    @Column(nullable = false)
 //    @Size(max = 1000)
 //    private String hmac; // HMAC-SHA256 da mensagem
 
     @Column(nullable = false)
-    @Size(max = 1000)
-    private String iv;
+    @Size(max = 750)
+    private byte[] iv;
 
     @Column(nullable = false)
     private LocalDateTime timestamp;
 
-    public Message(User sender, User receiver, String encryptedAesKey, String encryptedMessage, String iv, LocalDateTime timestamp) {
+    // Posição na ordem de commit, gerada pelo banco; usada pelo sync incremental da caixa
+    @Column(insertable = false, updatable = false)
+    private Long seq;
+
+    public Message(User sender, User receiver, byte[] encryptedAesKey, byte[] encryptedMessage, byte[] iv, LocalDateTime timestamp) {
         this.sender = sender;
         this.receiver = receiver;
         this.encryptedAesKey = encryptedAesKey;
         this.encryptedMessage = encryptedMessage;
         this.iv = iv;
         this.timestamp = timestamp;
+        this.conversationKey = conversationKey(sender, receiver);
+    }
+
+    // Mensagem de grupo: a conversa é o próprio grupo, a chave vem da época (keyEpochId)
+    public Message(User sender, UUID groupId, UUID keyEpochId, byte[] encryptedMessage, byte[] iv, LocalDateTime timestamp) {
+        this.sender = sender;
+        this.groupId = groupId;
+        this.keyEpochId = keyEpochId;
+        this.encryptedMessage = encryptedMessage;
+        this.iv = iv;
+        this.timestamp = timestamp;
+        this.conversationKey = groupId;
     }
 
     public Message() {
@@ -62,6 +114,14 @@ public class Message {
         this.id = id;
     }
 
+    public UUID getConversationKey() {
+        return conversationKey;
+    }
+
+    public void setConversationKey(UUID conversationKey) {
+        this.conversationKey = conversationKey;
+    }
+
     public User getSender() {
         return sender;
     }
@@ -78,19 +138,35 @@ public class Message {
         this.receiver = receiver;
     }
 
-    public String getEncryptedAesKey() {
+    public UUID getGroupId() {
+        return groupId;
+    }
+
+    public void setGroupId(UUID groupId) {
+        this.groupId = groupId;
+    }
+
+    public byte[] getEncryptedAesKey() {
         return encryptedAesKey;
     }
 
-    public void setEncryptedAesKey(String encryptedAesKey) {
+    public void setEncryptedAesKey(byte[] encryptedAesKey) {
         this.encryptedAesKey = encryptedAesKey;
     }
 
-    public String getEncryptedMessage() {
+    public UUID getKeyEpochId() {
+        return keyEpochId;
+    }
+
+    public void setKeyEpochId(UUID keyEpochId) {
+        this.keyEpochId = keyEpochId;
+    }
+
+    public byte[] getEncryptedMessage() {
         return encryptedMessage;
     }
 
-    public void setEncryptedMessage(String encryptedMessage) {
+    public void setEncryptedMessage(byte[] encryptedMessage) {
         this.encryptedMessage = encryptedMessage;
     }
 //
@@ -102,14 +178,22 @@ public class Message {
 //        this.hmac = hmac;
 //    }
 
-    public String getIv() {
+    public byte[] getIv() {
         return iv;
     }
 
-    public void setIv(String iv) {
+    public void setIv(byte[] iv) {
         this.iv = iv;
     }
 
+    public Long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+
     public LocalDateTime getTimestamp() {
         return timestamp;
     }
@@ -117,4 +201,15 @@ public class Message {
     public void setTimestamp(LocalDateTime timestamp) {
         this.timestamp = timestamp;
     }
+
+    public static UUID conversationKey(User a, User b) {
+        return conversationKey(a.getId(), b.getId());
+    }
+
+    // UUID derivado do par ordenado (menor, maior) dos ids dos participantes
+    public static UUID conversationKey(UUID a, UUID b) {
+        UUID low  = a.compareTo(b) <= 0 ? a : b;
+        UUID high = low == a ? b : a;
+        return UUID.nameUUIDFromBytes((low + ":" + high).getBytes(StandardCharsets.UTF_8));
+    }
 }
@@ -1,5 +1,6 @@
 package com.trinca.chatseguro.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Size;
 
@@ -19,6 +20,7 @@ public class User {
     @Column(nullable = false)
     private String email;
 
+    @JsonIgnore
     @Column(nullable = false)
     private String passwordHash;
 
@@ -36,6 +38,14 @@ public class User {
         this.publicKey = publicKey;
     }
 
+    // Referência leve (só id e username) para associar mensagens sem carregar a linha inteira
+    public static User reference(UUID id, String username) {
+        User user = new User();
+        user.id = id;
+        user.username = username;
+        return user;
+    }
+
     public UUID getId() {
         return id;
     }
@@ -0,0 +1,141 @@
+package com.trinca.chatseguro.presence;
+
+import com.trinca.chatseguro.exception.BadRequestException;
+import com.trinca.chatseguro.fanout.MessageFanout;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+// Sinais efêmeros de atividade ("digitando", "parou", ...): nunca passam pelo banco e só são
+// entregues a destinatários online, em /topic/activity/{destinatário}. Por par
+// (remetente, destinatário) sai no máximo um sinal por janela: o primeiro vai na hora,
+// repetições do mesmo sinal são descartadas e uma mudança dentro da janela fica pendente e
+// sai no fim dela (vale sempre o último estado).
+@Service
+public class ActivitySignals {
+
+    public static final String TOPIC_PREFIX = "/topic/activity/";
+    private static final Pattern KIND = Pattern.compile("[a-z][a-z-]{0,31}");
+
+    private final PresenceService presenceService;
+    private final MessageFanout fanout;
+    private final long windowNanos;
+    private final Duration window;
+    private final LongSupplier nanoTime;
+
+    private final Map<Pair, Slot> slots = new ConcurrentHashMap<>();
+    private ScheduledExecutorService sweeper;
+
+    @Autowired
+    public ActivitySignals(PresenceService presenceService,
+                           MessageFanout fanout,
+                           @Value("${chat.activity.window:1s}") Duration window) {
+        this(presenceService, fanout, window, System::nanoTime);
+    }
+
+    // Relógio injetável para os testes avançarem a janela sem dormir
+    ActivitySignals(PresenceService presenceService, MessageFanout fanout, Duration window, LongSupplier nanoTime) {
+        this.presenceService = presenceService;
+        this.fanout = fanout;
+        this.window = window;
+        this.windowNanos = window.toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+    @PostConstruct
+    void start() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "activity-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(10, window.toMillis() / 2);
+        sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        sweeper.shutdownNow();
+    }
+
+    public void signal(String sender, String receiver, String kind) {
+        if (receiver == null || kind == null || !KIND.matcher(kind).matches()) {
+            throw new BadRequestException("Invalid activity signal");
+        }
+        if (sender.equals(receiver) || !presenceService.isOnline(receiver)) {
+            return;
+        }
+
+        long now = nanoTime.getAsLong();
+        Pair pair = new Pair(sender, receiver);
+        boolean[] sendNow = new boolean[1];
+        slots.compute(pair, (k, slot) -> {
+            if (slot == null) {
+                slot = new Slot();
+            }
+            // Janela livre: envia (um "typing" repetido a cada janela mantém o indicador vivo)
+            if (slot.lastSent == null || now - slot.sentAt >= windowNanos) {
+                slot.lastSent = kind;
+                slot.sentAt = now;
+                slot.pending = null;
+                sendNow[0] = true;
+            } else {
+                // Dentro da janela: guarda só o último estado, se for diferente do enviado
+                slot.pending = kind.equals(slot.lastSent) ? null : kind;
+            }
+            return slot;
+        });
+        if (sendNow[0]) {
+            deliver(pair, kind);
+        }
+    }
+
+    void sweep() {
+        long now = nanoTime.getAsLong();
+        for (Pair pair : slots.keySet()) {
+            String[] due = new String[1];
+            slots.computeIfPresent(pair, (k, slot) -> {
+                if (now - slot.sentAt < windowNanos) {
+                    return slot;
+                }
+                if (slot.pending == null) {
+                    // Par ocioso: sai do mapa para que ele não cresça com conversas antigas
+                    return now - slot.sentAt >= 2 * windowNanos ? null : slot;
+                }
+                due[0] = slot.pending;
+                slot.lastSent = slot.pending;
+                slot.sentAt = now;
+                slot.pending = null;
+                return slot;
+            });
+            if (due[0] != null && presenceService.isOnline(pair.receiver())) {
+                deliver(pair, due[0]);
+            }
+        }
+    }
+
+    private void deliver(Pair pair, String kind) {
+        fanout.deliver(pair.receiver(), TOPIC_PREFIX + pair.receiver(),
+                Map.of("sender", pair.sender(), "kind", kind));
+    }
+
+    private record Pair(String sender, String receiver) {
+    }
+
+    private static final class Slot {
+        String lastSent;
+        long sentAt;
+        String pending;
+    }
+}
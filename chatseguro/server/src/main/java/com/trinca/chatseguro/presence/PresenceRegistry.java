@@ -0,0 +1,137 @@
+package com.trinca.chatseguro.presence;
+
+import com.trinca.chatseguro.event.PresenceChangedEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.*;
+
+import java.security.Principal;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Sessões e inscrições locais de cada usuário: usuário -> sessão -> (id da inscrição -> destino).
+// Atualizado pelos eventos de sessão do STOMP; consultado a cada entrega, então a leitura é só
+// uma busca em mapas concorrentes, sem lock. A primeira/última sessão de um usuário publica
+// PresenceChangedEvent.
+@Component
+public class PresenceRegistry {
+
+    private final Map<String, Map<String, Map<String, String>>> users = new ConcurrentHashMap<>();
+    private final ApplicationEventPublisher events;
+
+    public PresenceRegistry(ApplicationEventPublisher events) {
+        this.events = events;
+    }
+
+    public boolean isOnline(String user) {
+        return users.containsKey(user);
+    }
+
+    public Set<String> localUsers() {
+        return Collections.unmodifiableSet(users.keySet());
+    }
+
+    // Alguma sessão local do usuário está inscrita exatamente neste destino?
+    public boolean isSubscribed(String user, String destination) {
+        Map<String, Map<String, String>> sessions = users.get(user);
+        if (sessions == null) {
+            return false;
+        }
+        for (Map<String, String> subscriptions : sessions.values()) {
+            if (subscriptions.containsValue(destination)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void connect(String user, String sessionId) {
+        boolean[] first = new boolean[1];
+        users.compute(user, (k, sessions) -> {
+            if (sessions == null) {
+                sessions = new ConcurrentHashMap<>();
+                first[0] = true;
+            }
+            sessions.putIfAbsent(sessionId, new ConcurrentHashMap<>());
+            return sessions;
+        });
+        if (first[0]) {
+            events.publishEvent(new PresenceChangedEvent(user, true, true));
+        }
+    }
+
+    // Idempotente: o Spring pode publicar mais de um SessionDisconnectEvent por sessão
+    public void disconnect(String user, String sessionId) {
+        boolean[] last = new boolean[1];
+        users.computeIfPresent(user, (k, sessions) -> {
+            sessions.remove(sessionId);
+            last[0] = sessions.isEmpty();
+            return last[0] ? null : sessions;
+        });
+        if (last[0]) {
+            events.publishEvent(new PresenceChangedEvent(user, false, true));
+        }
+    }
+
+    // Só acrescenta a inscrição a uma sessão que já existe: um SUBSCRIBE processado depois do
+    // DISCONNECT não pode recriar a sessão (ela ficaria "online" para sempre). O Spring publica o
+    // SessionConnectedEvent antes de mandar o CONNECTED, então um cliente que espera o CONNECTED
+    // sempre encontra a sessão registrada
+    public void subscribe(String user, String sessionId, String subscriptionId, String destination) {
+        users.computeIfPresent(user, (k, sessions) -> {
+            sessions.computeIfPresent(sessionId, (id, subscriptions) -> {
+                subscriptions.put(subscriptionId, destination);
+                return subscriptions;
+            });
+            return sessions;
+        });
+    }
+
+    public void unsubscribe(String user, String sessionId, String subscriptionId) {
+        Map<String, Map<String, String>> sessions = users.get(user);
+        Map<String, String> subscriptions = sessions == null ? null : sessions.get(sessionId);
+        if (subscriptions != null) {
+            subscriptions.remove(subscriptionId);
+        }
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        Principal user = event.getUser();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (user != null && sessionId != null) {
+            connect(user.getName(), sessionId);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Principal user = event.getUser();
+        if (user != null) {
+            disconnect(user.getName(), event.getSessionId());
+        }
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        Principal user = event.getUser();
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        if (user != null && accessor.getSessionId() != null && accessor.getSubscriptionId() != null
+                && accessor.getDestination() != null) {
+            subscribe(user.getName(), accessor.getSessionId(), accessor.getSubscriptionId(), accessor.getDestination());
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        Principal user = event.getUser();
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        if (user != null && accessor.getSessionId() != null && accessor.getSubscriptionId() != null) {
+            unsubscribe(user.getName(), accessor.getSessionId(), accessor.getSubscriptionId());
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.trinca.chatseguro.presence;
+
+import com.trinca.chatseguro.event.PresenceChangedEvent;
+import com.trinca.chatseguro.exception.BadRequestException;
+import com.trinca.chatseguro.fanout.MessageFanout;
+import com.trinca.chatseguro.fanout.UserRoutingTable;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Presença no cluster (sessão local ou rota para outro nó) e avisos para quem observa.
+// Cada usuário conectado declara quem quer observar (watch); mudanças são acumuladas por
+// observador e enviadas em lote a cada flush-interval em /topic/presence/{observador},
+// um único frame { "username": online, ... } em vez de um por mudança ou de polling.
+@Service
+public class PresenceService {
+
+    private static final Logger log = LoggerFactory.getLogger(PresenceService.class);
+
+    public static final String TOPIC_PREFIX = "/topic/presence/";
+    public static final int MAX_WATCH = 500;
+
+    private final PresenceRegistry registry;
+    private final UserRoutingTable routes;
+    private final MessageFanout fanout;
+    private final Duration flushInterval;
+
+    // alvo -> observadores e observador -> alvos (para trocar/limpar a lista de um observador)
+    private final Map<String, Set<String>> watchers = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> watching = new ConcurrentHashMap<>();
+    // Mudanças ainda não enviadas, por observador; a última de cada alvo prevalece
+    private final Map<String, Map<String, Boolean>> pending = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService flusher;
+
+    public PresenceService(PresenceRegistry registry,
+                           UserRoutingTable routes,
+                           MessageFanout fanout,
+                           @Value("${chat.presence.flush-interval:250ms}") Duration flushInterval) {
+        this.registry = registry;
+        this.routes = routes;
+        this.fanout = fanout;
+        this.flushInterval = flushInterval;
+    }
+
+    @PostConstruct
+    void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "presence-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flush, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        flusher.shutdownNow();
+    }
+
+    public boolean isOnline(String user) {
+        return registry.isOnline(user) || !routes.remoteNodes(user).isEmpty();
+    }
+
+    public Map<String, Boolean> query(Collection<String> users) {
+        if (users.size() > MAX_WATCH) {
+            throw new BadRequestException("At most " + MAX_WATCH + " usernames per presence query");
+        }
+        Map<String, Boolean> status = new LinkedHashMap<>();
+        for (String user : users) {
+            status.put(user, isOnline(user));
+        }
+        return status;
+    }
+
+    // Substitui a lista observada e envia o estado atual de todos os alvos de uma vez
+    public void watch(String watcher, Collection<String> targets) {
+        Map<String, Boolean> snapshot = query(new LinkedHashSet<>(targets));
+
+        Set<String> previous = watching.put(watcher, ConcurrentHashMap.newKeySet());
+        if (previous != null) {
+            previous.forEach(target -> unlink(target, watcher));
+        }
+        Set<String> current = watching.get(watcher);
+        for (String target : snapshot.keySet()) {
+            current.add(target);
+            watchers.computeIfAbsent(target, k -> ConcurrentHashMap.newKeySet()).add(watcher);
+        }
+
+        pending.remove(watcher);
+        fanout.deliver(watcher, TOPIC_PREFIX + watcher, snapshot);
+    }
+
+    public void unwatchAll(String watcher) {
+        Set<String> previous = watching.remove(watcher);
+        if (previous != null) {
+            previous.forEach(target -> unlink(target, watcher));
+        }
+        pending.remove(watcher);
+    }
+
+    private void unlink(String target, String watcher) {
+        watchers.computeIfPresent(target, (k, set) -> {
+            set.remove(watcher);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    @EventListener
+    public void onPresenceChanged(PresenceChangedEvent event) {
+        String user = event.username();
+        // A lista observada pertence às sessões deste nó; some quando a última fecha
+        if (event.local() && !event.online()) {
+            unwatchAll(user);
+        }
+
+        Set<String> observers = watchers.get(user);
+        if (observers == null || observers.isEmpty()) {
+            return;
+        }
+        // O estado do cluster, não o do evento: o usuário pode continuar online em outro nó
+        boolean online = isOnline(user);
+        for (String watcher : observers) {
+            // Atômico com o remove do flush: o mapa só é alterado dentro do compute, então uma
+            // mudança nunca cai num mapa que o flush já levou
+            pending.compute(watcher, (k, changes) -> {
+                Map<String, Boolean> updated = changes != null ? changes : new HashMap<>();
+                updated.put(user, online);
+                return updated;
+            });
+        }
+    }
+
+    void flush() {
+        for (String watcher : pending.keySet()) {
+            Map<String, Boolean> changes = pending.remove(watcher);
+            if (changes != null && !changes.isEmpty()) {
+                try {
+                    fanout.deliver(watcher, TOPIC_PREFIX + watcher, changes);
+                } catch (RuntimeException e) {
+                    // Um observador com problema não pode parar o flush dos outros
+                    log.warn("Presence delivery to {} failed", watcher, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.trinca.chatseguro.repository;
+
+import com.trinca.chatseguro.model.ChatGroup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface ChatGroupRepository extends JpaRepository<ChatGroup, UUID> {
+
+    // Grupos de um usuário (idx_group_members_user)
+    @Query("""
+            select g from ChatGroup g
+            where g.id in (select gm.groupId from GroupMember gm where gm.userId = :user)
+            order by g.createdAt desc
+            """)
+    List<ChatGroup> findByMember(@Param("user") UUID userId);
+}
@@ -0,0 +1,7 @@
+package com.trinca.chatseguro.repository;
+
+import com.trinca.chatseguro.model.ConversationReceipt;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ConversationReceiptRepository extends JpaRepository<ConversationReceipt, ConversationReceipt.Key> {
+}
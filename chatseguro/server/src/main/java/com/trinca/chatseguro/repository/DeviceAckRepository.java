@@ -0,0 +1,24 @@
+package com.trinca.chatseguro.repository;
+
+import com.trinca.chatseguro.model.DeviceAck;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.UUID;
+
+public interface DeviceAckRepository extends JpaRepository<DeviceAck, DeviceAck.Key> {
+
+    // Upsert que nunca faz a posição andar para trás (acks podem chegar fora de ordem)
+    @Modifying
+    @Transactional
+    @Query(value = """
+            insert into device_acks (user_id, device_id, last_seq, updated_at)
+            values (:user, :device, :seq, now())
+            on conflict (user_id, device_id)
+            do update set last_seq = greatest(device_acks.last_seq, excluded.last_seq), updated_at = now()
+            """, nativeQuery = true)
+    void ack(@Param("user") UUID userId, @Param("device") String deviceId, @Param("seq") long seq);
+}
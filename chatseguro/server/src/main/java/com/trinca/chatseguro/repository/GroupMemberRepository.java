@@ -0,0 +1,27 @@
+package com.trinca.chatseguro.repository;
+
+import com.trinca.chatseguro.model.GroupMember;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface GroupMemberRepository extends JpaRepository<GroupMember, GroupMember.Key> {
+
+    // Só id e username: o resultado vira User.reference na lista de membros em cache
+    @Query("""
+            select u.id, u.username from User u
+            where u.id in (select gm.userId from GroupMember gm where gm.groupId = :group)
+            order by u.username
+            """)
+    List<Object[]> findMemberNames(@Param("group") UUID groupId);
+
+    @Modifying
+    @Transactional
+    @Query("delete from GroupMember gm where gm.groupId = :group and gm.userId = :user")
+    int deleteMember(@Param("group") UUID groupId, @Param("user") UUID userId);
+}
@@ -0,0 +1,13 @@
+package com.trinca.chatseguro.repository;
+
+import com.trinca.chatseguro.model.KeyEpochMember;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface KeyEpochMemberRepository extends JpaRepository<KeyEpochMember, KeyEpochMember.Key> {
+
+    List<KeyEpochMember> findByEpochIdInAndMemberId(Collection<UUID> epochIds, UUID memberId);
+}
@@ -0,0 +1,9 @@
+package com.trinca.chatseguro.repository;
+
+import com.trinca.chatseguro.model.KeyEpoch;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.UUID;
+
+public interface KeyEpochRepository extends JpaRepository<KeyEpoch, UUID> {
+}
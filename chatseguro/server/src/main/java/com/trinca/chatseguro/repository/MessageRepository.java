@@ -1,11 +1,24 @@
 package com.trinca.chatseguro.repository;
 
+import com.trinca.chatseguro.dto.MessageDto;
 import com.trinca.chatseguro.model.Message;
 import com.trinca.chatseguro.model.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.NativeQuery;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface MessageRepository extends JpaRepository<Message, UUID> {
     List<Message> findByReceiver(User receiver);
@@ -17,4 +30,120 @@ public interface MessageRepository extends JpaRepository<Message, UUID> {
 
     List<Message> findBySenderAndReceiverOrderByTimestampAsc(User sender, User receiver);
     List<Message> findByReceiverAndSenderOrderByTimestampAsc(User receiver, User sender);
+
+    // Leituras de listagem: projeções direto em MessageDto, com os usernames vindos do join
+    // na mesma consulta. Nenhuma entidade é carregada, então o custo é um statement por página.
+    String DTO_SELECT = """
+            select new com.trinca.chatseguro.dto.MessageDto(
+                m.id, s.username, r.username, m.groupId, m.encryptedAesKey, m.keyEpochId,
+                m.encryptedMessage, m.iv, m.timestamp, m.seq)
+            from Message m join m.sender s left join m.receiver r
+            """;
+
+    // As duas direções da conversa em uma única consulta ordenada (idx_messages_conversation)
+    @Query(DTO_SELECT + """
+            where m.conversationKey = :key
+            order by m.timestamp asc, m.id asc
+            """)
+    List<MessageDto> findConversation(@Param("key") UUID conversationKey);
+
+    @Query(DTO_SELECT + """
+            where m.conversationKey = :key
+            order by m.timestamp desc, m.id desc
+            """)
+    List<MessageDto> findConversationLatest(@Param("key") UUID conversationKey, Pageable page);
+
+    @Query(DTO_SELECT + """
+            where m.conversationKey = :key
+              and (m.timestamp < :ts or (m.timestamp = :ts and m.id < :id))
+            order by m.timestamp desc, m.id desc
+            """)
+    List<MessageDto> findConversationBefore(@Param("key") UUID conversationKey,
+                                            @Param("ts") LocalDateTime ts, @Param("id") UUID id,
+                                            Pageable page);
+
+    // Diretas recebidas e as dos grupos do usuário enviadas por outros membros
+    @Query(DTO_SELECT + """
+            where r.id = :user
+               or (s.id <> :user
+                   and m.groupId in (select gm.groupId from GroupMember gm where gm.userId = :user))
+            order by m.timestamp asc, m.id asc
+            """)
+    List<MessageDto> findInbox(@Param("user") UUID userId);
+
+    @Query(DTO_SELECT + """
+            where s.id = :user and m.groupId is null
+            order by m.timestamp asc, m.id asc
+            """)
+    List<MessageDto> findSent(@Param("user") UUID userId);
+
+    // Recebidas, enviadas e as dos grupos do usuário (inclusive as que ele mandou) depois de "after",
+    // em ordem de seq; cada ramo usa o seu índice (x_id, seq). Só linhas gravadas antes de
+    // "visibleBefore" (ver SyncService): o seq vem do nextval no INSERT, então uma linha recente
+    // com seq menor ainda pode estar sem commit em outro nó
+    @NativeQuery(value = """
+            select m.id, s.username as sender_username, r.username as receiver_username, m.group_id,
+                   m.encrypted_aes_key, m.key_epoch_id, m.encrypted_message, m.iv, m.timestamp, m.seq
+            from (
+                (select * from messages where receiver_id = :user and seq > :after and timestamp < :visibleBefore
+                 order by seq limit :limit)
+                union all
+                (select * from messages where sender_id = :user and receiver_id <> :user and seq > :after
+                   and timestamp < :visibleBefore
+                 order by seq limit :limit)
+                union all
+                (select * from messages
+                 where group_id in (select group_id from group_members where user_id = :user)
+                   and seq > :after and timestamp < :visibleBefore
+                 order by seq limit :limit)
+            ) m
+            join users s on s.id = m.sender_id
+            left join users r on r.id = m.receiver_id
+            order by m.seq
+            limit :limit
+            """, sqlResultSetMapping = MessageDto.MAPPING)
+    List<MessageDto> findMailboxAfter(@Param("user") UUID userId, @Param("after") long after,
+                                      @Param("visibleBefore") LocalDateTime visibleBefore, @Param("limit") int limit);
+
+    // Maior seq da caixa já fora da janela de visibilidade: teto para os acks dos dispositivos
+    @NativeQuery("""
+            select greatest(
+                (select coalesce(max(seq), 0) from messages
+                 where receiver_id = :user and timestamp < :visibleBefore),
+                (select coalesce(max(seq), 0) from messages
+                 where sender_id = :user and receiver_id <> :user and timestamp < :visibleBefore),
+                (select coalesce(max(seq), 0) from messages
+                 where group_id in (select group_id from group_members where user_id = :user)
+                   and timestamp < :visibleBefore))
+            """)
+    long findMailboxWatermark(@Param("user") UUID userId, @Param("visibleBefore") LocalDateTime visibleBefore);
+
+    // Mesma leitura sem limite, como cursor do servidor (fetch size): usado pelo export, que
+    // precisa rodar dentro de uma transação e fechar o Stream no fim
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @NativeQuery(value = """
+            select m.id, s.username as sender_username, r.username as receiver_username, m.group_id,
+                   m.encrypted_aes_key, m.key_epoch_id, m.encrypted_message, m.iv, m.timestamp, m.seq
+            from (
+                (select * from messages where receiver_id = :user and seq > :after and timestamp < :visibleBefore)
+                union all
+                (select * from messages where sender_id = :user and receiver_id <> :user and seq > :after
+                   and timestamp < :visibleBefore)
+                union all
+                (select * from messages
+                 where group_id in (select group_id from group_members where user_id = :user)
+                   and seq > :after and timestamp < :visibleBefore)
+            ) m
+            join users s on s.id = m.sender_id
+            left join users r on r.id = m.receiver_id
+            order by m.seq
+            """, sqlResultSetMapping = MessageDto.MAPPING)
+    Stream<MessageDto> streamMailboxAfter(@Param("user") UUID userId, @Param("after") long after,
+                                          @Param("visibleBefore") LocalDateTime visibleBefore);
+
+    // Um único DELETE; o filtro por remetente faz ids de outros usuários serem simplesmente ignorados
+    @Modifying
+    @Transactional
+    @Query("delete from Message m where m.sender.id = :sender and m.id in :ids")
+    int deleteOwn(@Param("sender") UUID senderId, @Param("ids") Collection<UUID> ids);
 }
@@ -2,11 +2,19 @@ package com.trinca.chatseguro.repository;
 
 import com.trinca.chatseguro.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface UserRepository extends JpaRepository<User, UUID> {
     Optional<User> findByUsername(String username);
     boolean existsByUsername(String username);
+
+    // Só as colunas do diretório de chaves, sem carregar entidades: [username, publicKey]
+    @Query("select u.username, u.publicKey from User u where u.username in :usernames")
+    List<Object[]> findPublicKeys(@Param("usernames") Collection<String> usernames);
 }
@@ -1,58 +1,147 @@
 package com.trinca.chatseguro.service;
 
+import com.trinca.chatseguro.dto.MessageDto;
+import com.trinca.chatseguro.exception.BadRequestException;
+import com.trinca.chatseguro.model.KeyEpoch;
 import com.trinca.chatseguro.model.Message;
 import com.trinca.chatseguro.model.User;
 import com.trinca.chatseguro.repository.MessageRepository;
-import com.trinca.chatseguro.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.UUID;
 
 @Service
 public class ChatService {
 
+    public static final int MAX_BULK_DELETE = 1000;
+
     @Autowired
     private MessageRepository messageRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private UserDirectory userDirectory;
+
+    @Autowired
+    private MessageBatchWriter messageBatchWriter;
+
+    @Autowired
+    private KeyEpochService keyEpochService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Etapas do envio (chat.send, stage=resolve|insert); a entrega ao broker é medida no controller
+    private Timer resolveTimer;
+    private Timer insertTimer;
+    private Timer inboxTimer;
+    private Timer sentTimer;
+
+    @PostConstruct
+    void registerMeters() {
+        resolveTimer = sendStage(meterRegistry, "resolve");
+        insertTimer = sendStage(meterRegistry, "insert");
+        inboxTimer = MessageService.historyQuery(meterRegistry, "inbox");
+        sentTimer = MessageService.historyQuery(meterRegistry, "sent");
+    }
+
+    public static Timer sendStage(MeterRegistry registry, String stage) {
+        return Timer.builder("chat.send")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    // Com o UserDirectory aquecido o envio custa apenas o INSERT da mensagem, feito em
+    // lote pelo MessageBatchWriter; retorna depois que o lote foi commitado.
+    public Message sendMessage(String senderUsername, String receiverUsername,
+                               byte[] encryptedAesKey, byte[] encryptedMessage, byte[] iv) throws Exception {
+        return sendMessage(senderUsername, receiverUsername, encryptedAesKey, null, encryptedMessage, iv);
+    }
 
+    // Exatamente um entre encryptedAesKey (chave por mensagem) e keyEpochId (chave da época)
     public Message sendMessage(String senderUsername, String receiverUsername,
-                               String encryptedAesKey, String encryptedMessage, String iv) throws Exception {
+                               byte[] encryptedAesKey, UUID keyEpochId,
+                               byte[] encryptedMessage, byte[] iv) throws Exception {
+        if ((encryptedAesKey == null) == (keyEpochId == null)) {
+            throw new BadRequestException("Exactly one of encryptedAesKey or keyEpochId is required");
+        }
 
-        User sender = userRepository.findByUsername(senderUsername)
-                .orElseThrow(() -> new Exception("Sender not found"));
+        Timer.Sample sample = Timer.start(meterRegistry);
+        User sender = userDirectory.resolve(senderUsername);
+        User receiver = userDirectory.resolve(receiverUsername);
 
-        User receiver = userRepository.findByUsername(receiverUsername)
-                .orElseThrow(() -> new Exception("Receiver not found"));
+        if (keyEpochId != null) {
+            keyEpochService.requireFor(keyEpochId, sender, receiver);
+        }
+        sample.stop(resolveTimer);
 
         Message message = new Message(sender, receiver, encryptedAesKey, encryptedMessage, iv, LocalDateTime.now());
-        return messageRepository.save(message);
+        message.setKeyEpochId(keyEpochId);
+        // Inclui a espera na fila do group commit, que é o que o remetente sente
+        sample = Timer.start(meterRegistry);
+        try {
+            return messageBatchWriter.write(message);
+        } finally {
+            sample.stop(insertTimer);
+        }
     }
 
-    public List<Message> getMessagesForUser(String username) throws Exception {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new Exception("User not found"));
-        return messageRepository.findByReceiver(user);
+    public KeyEpoch startKeyEpoch(String senderUsername, String receiverUsername, byte[] wrappedKey) {
+        if (wrappedKey == null || wrappedKey.length == 0) {
+            throw new BadRequestException("Missing encryptedAesKey");
+        }
+        User sender = userDirectory.resolve(senderUsername);
+        User receiver = userDirectory.resolve(receiverUsername);
+        return keyEpochService.create(sender, receiver, wrappedKey);
     }
 
-    public List<Message> getMessagesSentByUser(String username) throws Exception {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new Exception("User not found"));
-        return messageRepository.findBySender(user);
+    // Só os participantes da conversa podem ler a chave embrulhada de uma época
+    public KeyEpoch getKeyEpoch(UUID id, String requesterUsername) {
+        User requester = userDirectory.resolve(requesterUsername);
+        return keyEpochService.find(id)
+                .filter(epoch -> epoch.getGroupId() == null && epoch.hasParticipant(requester.getId()))
+                .orElseThrow(() -> new BadRequestException("Unknown key epoch: " + id));
     }
 
-    public void deleteMessage(UUID id, String requesterUsername) throws Exception {
-        Message message = messageRepository.findById(id)
-                .orElseThrow(() -> new Exception("Message not found"));
+    public List<MessageDto> getMessagesForUser(String username) throws Exception {
+        User user = userDirectory.resolve(username);
+        return inboxTimer.record(() -> messageRepository.findInbox(user.getId()));
+    }
 
-        if (!message.getSender().getUsername().equals(requesterUsername)) {
-            throw new SecurityException("Only the sender can delete this message");
+    public List<MessageDto> getMessagesSentByUser(String username) throws Exception {
+        User user = userDirectory.resolve(username);
+        return sentTimer.record(() -> messageRepository.findSent(user.getId()));
+    }
+
+    public void deleteMessage(UUID id, String requesterUsername) throws Exception {
+        User requester = userDirectory.resolve(requesterUsername);
+        if (messageRepository.deleteOwn(requester.getId(), List.of(id)) == 1) {
+            return;
+        }
+        // Nada apagado: só aqui vale a pena descobrir se a mensagem existe
+        if (!messageRepository.existsById(id)) {
+            throw new Exception("Message not found");
         }
+        throw new SecurityException("Only the sender can delete this message");
+    }
 
-        messageRepository.deleteById(id);
+    // Apaga de uma vez as mensagens do próprio usuário; ids alheios ou inexistentes não contam
+    public int deleteMessages(Collection<UUID> ids, String requesterUsername) {
+        if (ids == null || ids.isEmpty()) {
+            return 0;
+        }
+        if (ids.size() > MAX_BULK_DELETE) {
+            throw new BadRequestException("At most " + MAX_BULK_DELETE + " ids per delete");
+        }
+        User requester = userDirectory.resolve(requesterUsername);
+        return messageRepository.deleteOwn(requester.getId(), new HashSet<>(ids));
     }
 }
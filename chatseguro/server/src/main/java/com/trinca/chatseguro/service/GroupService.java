@@ -0,0 +1,220 @@
+package com.trinca.chatseguro.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.trinca.chatseguro.dto.ConversationPageDto;
+import com.trinca.chatseguro.event.GroupMembershipChangedEvent;
+import com.trinca.chatseguro.exception.BadRequestException;
+import com.trinca.chatseguro.model.ChatGroup;
+import com.trinca.chatseguro.model.GroupMember;
+import com.trinca.chatseguro.model.KeyEpoch;
+import com.trinca.chatseguro.model.Message;
+import com.trinca.chatseguro.model.User;
+import com.trinca.chatseguro.repository.ChatGroupRepository;
+import com.trinca.chatseguro.repository.GroupMemberRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+// Conversas em grupo. Uma mensagem é gravada uma única vez (ciphertext uma vez, group_id no
+// lugar de receiver_id) e a chave AES vem de uma época do grupo, embrulhada uma vez por membro.
+// Quem entra ou sai não recebe/perde chaves antigas: o cliente inicia uma nova época com o
+// conjunto atual de membros, que é exigido completo em startKeyEpoch.
+@Service
+public class GroupService {
+
+    private final ChatGroupRepository groupRepository;
+    private final GroupMemberRepository memberRepository;
+    private final UserDirectory userDirectory;
+    private final KeyEpochService keyEpochService;
+    private final MessageService messageService;
+    private final MessageBatchWriter messageBatchWriter;
+    private final ApplicationEventPublisher events;
+    private final TransactionTemplate tx;
+    private final int maxMembers;
+
+    // Membros por grupo (User.reference), usados a cada envio para checar o remetente e fazer o
+    // fan-out; mudanças invalidam na hora em todos os nós (GroupMembershipChangedEvent repassado
+    // pelo MessageFanout), e o TTL só cobre um nó que estava desconectado do aviso
+    private final Cache<UUID, List<User>> members;
+
+    public GroupService(ChatGroupRepository groupRepository,
+                        GroupMemberRepository memberRepository,
+                        UserDirectory userDirectory,
+                        KeyEpochService keyEpochService,
+                        MessageService messageService,
+                        MessageBatchWriter messageBatchWriter,
+                        ApplicationEventPublisher events,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${chat.groups.max-members:256}") int maxMembers,
+                        @Value("${chat.groups.cache-ttl:1m}") Duration ttl,
+                        @Value("${chat.groups.cache-max-size:10000}") long maxSize) {
+        this.groupRepository = groupRepository;
+        this.memberRepository = memberRepository;
+        this.userDirectory = userDirectory;
+        this.keyEpochService = keyEpochService;
+        this.messageService = messageService;
+        this.messageBatchWriter = messageBatchWriter;
+        this.events = events;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.maxMembers = maxMembers;
+        this.members = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    // O criador é sempre membro
+    public ChatGroup create(String creatorUsername, String name, Collection<String> memberUsernames) {
+        if (name == null || name.isBlank() || name.length() > 100) {
+            throw new BadRequestException("Group name must have 1 to 100 characters");
+        }
+        User creator = userDirectory.resolve(creatorUsername);
+        Map<UUID, User> initial = new LinkedHashMap<>();
+        initial.put(creator.getId(), creator);
+        if (memberUsernames != null) {
+            for (String username : memberUsernames) {
+                User user = userDirectory.resolve(username);
+                initial.put(user.getId(), user);
+            }
+        }
+        if (initial.size() > maxMembers) {
+            throw new BadRequestException("A group can have at most " + maxMembers + " members");
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        return tx.execute(status -> {
+            ChatGroup group = groupRepository.save(new ChatGroup(name, creator, now));
+            memberRepository.saveAll(initial.keySet().stream()
+                    .map(id -> new GroupMember(group.getId(), id, now))
+                    .toList());
+            return group;
+        });
+    }
+
+    public List<ChatGroup> groupsOf(String username) {
+        return groupRepository.findByMember(userDirectory.resolve(username).getId());
+    }
+
+    public List<User> members(UUID groupId) {
+        return members.get(groupId, id -> memberRepository.findMemberNames(id).stream()
+                .map(row -> User.reference((UUID) row[0], (String) row[1]))
+                .toList());
+    }
+
+    // Só o criador adiciona membros
+    public void addMember(UUID groupId, String requesterUsername, String username) {
+        ChatGroup group = requireGroup(groupId, requesterUsername);
+        User requester = userDirectory.resolve(requesterUsername);
+        if (!group.getCreatedBy().equals(requester.getId())) {
+            throw new BadRequestException("Only the group creator can add members");
+        }
+        User user = userDirectory.resolve(username);
+        if (isMember(groupId, user.getId())) {
+            return;
+        }
+        if (members(groupId).size() >= maxMembers) {
+            throw new BadRequestException("A group can have at most " + maxMembers + " members");
+        }
+        memberRepository.save(new GroupMember(groupId, user.getId(), LocalDateTime.now()));
+        events.publishEvent(new GroupMembershipChangedEvent(groupId));
+    }
+
+    // O criador remove qualquer membro; os demais só podem sair
+    public void removeMember(UUID groupId, String requesterUsername, String username) {
+        ChatGroup group = requireGroup(groupId, requesterUsername);
+        User requester = userDirectory.resolve(requesterUsername);
+        User user = userDirectory.resolve(username);
+        if (!requester.getId().equals(user.getId()) && !group.getCreatedBy().equals(requester.getId())) {
+            throw new BadRequestException("Only the group creator can remove other members");
+        }
+        memberRepository.deleteMember(groupId, user.getId());
+        events.publishEvent(new GroupMembershipChangedEvent(groupId));
+    }
+
+    @EventListener
+    public void onGroupMembershipChanged(GroupMembershipChangedEvent event) {
+        members.invalidate(event.groupId());
+    }
+
+    // wrappedKeys: username -> chave AES embrulhada com a RSA dele, para todos os membros atuais
+    public KeyEpoch startKeyEpoch(UUID groupId, String senderUsername, Map<String, byte[]> wrappedKeys) {
+        User sender = requireMember(groupId, senderUsername);
+        if (wrappedKeys == null || wrappedKeys.isEmpty()) {
+            throw new BadRequestException("Missing wrappedKeys");
+        }
+
+        Map<UUID, byte[]> keys = new LinkedHashMap<>();
+        for (User member : members(groupId)) {
+            byte[] key = wrappedKeys.get(member.getUsername());
+            if (key == null || key.length == 0) {
+                throw new BadRequestException("Missing wrapped key for member " + member.getUsername());
+            }
+            keys.put(member.getId(), key);
+        }
+        if (keys.size() != wrappedKeys.size()) {
+            throw new BadRequestException("wrappedKeys must contain exactly the current group members");
+        }
+        return keyEpochService.createForGroup(sender, groupId, keys);
+    }
+
+    // Só a chave embrulhada para quem pede
+    public byte[] memberKey(UUID groupId, UUID epochId, String requesterUsername) {
+        User requester = requireMember(groupId, requesterUsername);
+        keyEpochService.requireForGroup(epochId, groupId);
+        byte[] key = keyEpochService.memberKeys(List.of(epochId), requester.getId()).get(epochId);
+        if (key == null) {
+            throw new BadRequestException("Unknown key epoch: " + epochId);
+        }
+        return key;
+    }
+
+    // Uma linha para o grupo inteiro; retorna depois do commit do lote (ver MessageBatchWriter)
+    public Message send(UUID groupId, String senderUsername, UUID keyEpochId,
+                        byte[] encryptedMessage, byte[] iv) throws Exception {
+        if (groupId == null || keyEpochId == null) {
+            throw new BadRequestException("groupId and keyEpochId are required");
+        }
+        User sender = requireMember(groupId, senderUsername);
+        keyEpochService.requireForGroup(keyEpochId, groupId);
+
+        Message message = new Message(sender, groupId, keyEpochId, encryptedMessage, iv, LocalDateTime.now());
+        return messageBatchWriter.write(message);
+    }
+
+    public ConversationPageDto history(UUID groupId, String readerUsername, String before, int limit) {
+        User reader = requireMember(groupId, readerUsername);
+        return messageService.getGroupPage(groupId, reader, before, limit);
+    }
+
+    // Não membros recebem o mesmo erro de grupo inexistente
+    public User requireMember(UUID groupId, String username) {
+        User user = userDirectory.resolve(username);
+        if (!isMember(groupId, user.getId())) {
+            throw new BadRequestException("Unknown group: " + groupId);
+        }
+        return user;
+    }
+
+    private ChatGroup requireGroup(UUID groupId, String requesterUsername) {
+        requireMember(groupId, requesterUsername);
+        return groupRepository.findById(groupId)
+                .orElseThrow(() -> new BadRequestException("Unknown group: " + groupId));
+    }
+
+    private boolean isMember(UUID groupId, UUID userId) {
+        for (User member : members(groupId)) {
+            if (member.getId().equals(userId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,29 +1,81 @@
 package com.trinca.chatseguro.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 
 @Service
 public class JwtService {
 
-    @Value("${jwt.secret}")
-    private String jwtSecret;
+    private final SecretKey signKey;
+    private final JwtParser parser;
 
-    private SecretKey getSignKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
-    }
+    // Claims já verificados, indexados pelo SHA-256 do token e válidos até o "exp" do próprio token
+    // max-size 0 desliga o cache (toda chamada verifica a assinatura)
+    private final Cache<ByteBuffer, Claims> verifiedTokens;
+    private final boolean cacheEnabled;
+    private final LongAdder cacheHits   = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    // auth.jwt.verify por resultado: cached (hash + lookup), verified (HMAC + parse) e invalid
+    private final MeterRegistry meterRegistry;
+    private final Timer cachedTimer;
+    private final Timer verifiedTimer;
+    private final Timer invalidTimer;
 
     private final long expirationMs = 1000 * 60 * 60; // 1 hora
 
+    public JwtService(@Value("${jwt.secret}") String jwtSecret,
+                      @Value("${jwt.cache.max-size:10000}") long cacheMaxSize,
+                      MeterRegistry meterRegistry) {
+        this.signKey = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(signKey)
+                .build();
+        this.cacheEnabled = cacheMaxSize > 0;
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new UntilTokenExpiry())
+                .build();
+
+        FunctionCounter.builder("jwt.cache.hits", cacheHits, LongAdder::sum).register(meterRegistry);
+        FunctionCounter.builder("jwt.cache.misses", cacheMisses, LongAdder::sum).register(meterRegistry);
+
+        this.meterRegistry = meterRegistry;
+        this.cachedTimer = verifyTimer(meterRegistry, "cached");
+        this.verifiedTimer = verifyTimer(meterRegistry, "verified");
+        this.invalidTimer = verifyTimer(meterRegistry, "invalid");
+    }
+
+    private static Timer verifyTimer(MeterRegistry registry, String result) {
+        return Timer.builder("auth.jwt.verify")
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
     public String generateToken(String username) {
         Map<String, Object> claims = new HashMap<>();
         return createToken(claims, username);
@@ -38,38 +90,93 @@ public class JwtService {
                 .setSubject(subject)
                 .setIssuedAt(now)
                 .setExpiration(expiry)
-                .signWith(getSignKey(), SignatureAlgorithm.HS256) // ✔️ CORRETO
+                .signWith(signKey, SignatureAlgorithm.HS256) // ✔️ CORRETO
                 .compact();
     }
 
+    /**
+     * Verifica assinatura e expiração do token uma única vez; chamadas repetidas com o
+     * mesmo token reaproveitam os claims do cache até o "exp".
+     * Lança {@link io.jsonwebtoken.JwtException} se o token for inválido.
+     */
+    public Claims verify(String token) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        ByteBuffer key = cacheEnabled ? digest(token) : null;
+
+        Claims claims = cacheEnabled ? verifiedTokens.getIfPresent(key) : null;
+        if (claims != null) {
+            cacheHits.increment();
+            sample.stop(cachedTimer);
+            return claims;
+        }
+
+        cacheMisses.increment();
+        try {
+            claims = parser.parseClaimsJws(token).getBody();
+        } catch (RuntimeException e) {
+            sample.stop(invalidTimer);
+            throw e;
+        }
+        if (cacheEnabled && claims.getExpiration() != null) {
+            verifiedTokens.put(key, claims);
+        }
+        sample.stop(verifiedTimer);
+        return claims;
+    }
+
     public String extractUsername(String token) {
-        return extractClaim(token, claims -> claims.getSubject());
+        return extractClaim(token, Claims::getSubject);
     }
 
     public Date extractExpiration(String token) {
-        return extractClaim(token, claims -> claims.getExpiration());
+        return extractClaim(token, Claims::getExpiration);
     }
 
-    public <T> T extractClaim(String token, Function<io.jsonwebtoken.Claims, T> claimsResolver) {
-        final io.jsonwebtoken.Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
+        return claimsResolver.apply(verify(token));
     }
 
-    private io.jsonwebtoken.Claims extractAllClaims(String token) {
-        return Jwts
-                .parserBuilder()
-                .setSigningKey(getSignKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    public boolean isTokenValid(String token, String username) {
+        return isTokenValid(verify(token), username);
     }
 
-    public boolean isTokenValid(String token, String username) {
-        final String extractedUsername = extractUsername(token);
-        return (extractedUsername.equals(username) && !isTokenExpired(token));
+    public boolean isTokenValid(Claims claims, String username) {
+        return claims.getSubject().equals(username) && !claims.getExpiration().before(new Date());
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.sum();
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private static ByteBuffer digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return ByteBuffer.wrap(sha256.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class UntilTokenExpiry implements Expiry<ByteBuffer, Claims> {
+
+        @Override
+        public long expireAfterCreate(ByteBuffer key, Claims claims, long currentTime) {
+            long remainingMs = claims.getExpiration().getTime() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMs));
+        }
+
+        @Override
+        public long expireAfterUpdate(ByteBuffer key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(ByteBuffer key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 }
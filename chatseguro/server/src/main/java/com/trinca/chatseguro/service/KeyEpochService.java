@@ -0,0 +1,140 @@
+package com.trinca.chatseguro.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.trinca.chatseguro.exception.BadRequestException;
+import com.trinca.chatseguro.model.KeyEpoch;
+import com.trinca.chatseguro.model.KeyEpochMember;
+import com.trinca.chatseguro.model.User;
+import com.trinca.chatseguro.repository.KeyEpochMemberRepository;
+import com.trinca.chatseguro.repository.KeyEpochRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+@Service
+public class KeyEpochService {
+
+    private static final String MEMBER_KEY_SQL =
+            "insert into key_epoch_members (epoch_id, member_id, wrapped_key) values (?, ?, ?)";
+
+    private final KeyEpochRepository repository;
+    private final KeyEpochMemberRepository memberRepository;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+
+    // Épocas são imutáveis; o cache evita o SELECT de validação a cada mensagem enviada
+    private final Cache<UUID, KeyEpoch> epochs;
+
+    public KeyEpochService(KeyEpochRepository repository,
+                           KeyEpochMemberRepository memberRepository,
+                           JdbcTemplate jdbc,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${chat.key-epochs.cache-ttl:1h}") Duration ttl,
+                           @Value("${chat.key-epochs.cache-max-size:100000}") long maxSize) {
+        this.repository = repository;
+        this.memberRepository = memberRepository;
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.epochs = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(ttl)
+                .build();
+    }
+
+    public KeyEpoch create(User sender, User receiver, byte[] wrappedKey) {
+        KeyEpoch epoch = repository.save(new KeyEpoch(sender, receiver, wrappedKey, LocalDateTime.now()));
+        epochs.put(epoch.getId(), epoch);
+        return epoch;
+    }
+
+    // Época de grupo: a mesma chave AES embrulhada para cada membro (memberId -> chave),
+    // gravada junto com a época em um único batch
+    public KeyEpoch createForGroup(User sender, UUID groupId, Map<UUID, byte[]> wrappedKeys) {
+        List<Map.Entry<UUID, byte[]>> keys = new ArrayList<>(wrappedKeys.entrySet());
+        KeyEpoch epoch = tx.execute(status -> {
+            KeyEpoch saved = repository.save(new KeyEpoch(sender, groupId, LocalDateTime.now()));
+            repository.flush();
+            jdbc.batchUpdate(MEMBER_KEY_SQL, keys, keys.size(), (ps, entry) -> {
+                ps.setObject(1, saved.getId());
+                ps.setObject(2, entry.getKey());
+                ps.setBytes(3, entry.getValue());
+            });
+            return saved;
+        });
+        epochs.put(epoch.getId(), epoch);
+        return epoch;
+    }
+
+    public Optional<KeyEpoch> find(UUID id) {
+        KeyEpoch epoch = epochs.getIfPresent(id);
+        if (epoch != null) {
+            return Optional.of(epoch);
+        }
+        Optional<KeyEpoch> loaded = repository.findById(id);
+        loaded.ifPresent(e -> epochs.put(id, e));
+        return loaded;
+    }
+
+    // A época tem que ser da mesma direção (remetente -> destinatário) da mensagem
+    public KeyEpoch requireFor(UUID id, User sender, User receiver) {
+        KeyEpoch epoch = find(id)
+                .orElseThrow(() -> new BadRequestException("Unknown key epoch: " + id));
+        if (!epoch.getSenderId().equals(sender.getId()) || !receiver.getId().equals(epoch.getReceiverId())) {
+            throw new BadRequestException("Key epoch " + id + " does not belong to this conversation");
+        }
+        return epoch;
+    }
+
+    // A época tem que ter sido criada para o grupo; qualquer membro pode enviar com ela
+    public KeyEpoch requireForGroup(UUID id, UUID groupId) {
+        KeyEpoch epoch = find(id)
+                .orElseThrow(() -> new BadRequestException("Unknown key epoch: " + id));
+        if (!groupId.equals(epoch.getGroupId())) {
+            throw new BadRequestException("Key epoch " + id + " does not belong to this group");
+        }
+        return epoch;
+    }
+
+    // Chaves de épocas de grupo embrulhadas para um membro; épocas anteriores à entrada dele não aparecem
+    public Map<UUID, byte[]> memberKeys(Collection<UUID> ids, UUID memberId) {
+        Map<UUID, byte[]> keys = new LinkedHashMap<>();
+        if (ids.isEmpty()) {
+            return keys;
+        }
+        for (KeyEpochMember key : memberRepository.findByEpochIdInAndMemberId(ids, memberId)) {
+            keys.put(key.getEpochId(), key.getWrappedKey());
+        }
+        return keys;
+    }
+
+    // Chaves das épocas referenciadas por uma página, cada uma uma única vez
+    public Map<UUID, byte[]> wrappedKeys(Collection<UUID> ids) {
+        Map<UUID, byte[]> keys = new LinkedHashMap<>();
+        List<UUID> missing = new ArrayList<>();
+        for (UUID id : ids) {
+            if (id == null || keys.containsKey(id)) {
+                continue;
+            }
+            KeyEpoch epoch = epochs.getIfPresent(id);
+            if (epoch != null) {
+                keys.put(id, epoch.getWrappedKey());
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (KeyEpoch epoch : repository.findAllById(missing)) {
+                epochs.put(epoch.getId(), epoch);
+                keys.put(epoch.getId(), epoch.getWrappedKey());
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,115 @@
+package com.trinca.chatseguro.service;
+
+import com.trinca.chatseguro.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Token bucket por usuário e por IP, cada tipo em sua própria tabela fixa de faixas: cada
+// faixa guarda um único long (GCRA, o instante teórico da próxima chegada) atualizado com
+// CAS, então não há mapa crescendo com chaves de atacantes nem locks. Chaves que caem na
+// mesma faixa dividem o balde; o hash tem semente aleatória por processo para que não dê
+// para escolher usernames que esvaziem uma faixa específica.
+@Service
+public class LoginRateLimiter {
+
+    private final Stripes users;
+    private final Stripes addresses;
+    private final long interval;   // ns por ficha
+    private final long burst;      // ns de tolerância = (capacidade - 1) * interval
+    private final Counter throttled;
+
+    public LoginRateLimiter(MeterRegistry meterRegistry,
+                            @Value("${security.login-limit.capacity:10}") int capacity,
+                            @Value("${security.login-limit.refill-period:6s}") Duration refillPeriod,
+                            @Value("${security.login-limit.stripes:4096}") int stripes) {
+        SecureRandom random = new SecureRandom();
+        this.users = new Stripes(stripes, random.nextLong());
+        this.addresses = new Stripes(stripes, random.nextLong());
+        this.interval = refillPeriod.toNanos();
+        this.burst = (long) (Math.max(1, capacity) - 1) * interval;
+        this.throttled = Counter.builder("auth.login.throttled").register(meterRegistry);
+    }
+
+    // Só consome se os dois baldes tiverem ficha; lança 429 sem tocar em nenhum caso contrário.
+    // username nulo = só o limite por IP (cadastro)
+    public void acquire(String username, String address) {
+        long now = System.nanoTime();
+        int user = username != null ? users.index(username) : -1;
+        int addr = address != null ? addresses.index(address) : -1;
+
+        while (true) {
+            long wait = Math.max(user >= 0 ? waitFor(users, user, now) : 0,
+                                 addr >= 0 ? waitFor(addresses, addr, now) : 0);
+            if (wait > 0) {
+                throttled.increment();
+                throw new TooManyRequestsException("Too many attempts, try again later", Duration.ofNanos(wait));
+            }
+            if (user >= 0 && !tryConsume(users, user, now)) {
+                continue;
+            }
+            if (addr >= 0 && !tryConsume(addresses, addr, now)) {
+                // Outra requisição esvaziou o balde do IP entre a checagem e o consumo: devolve a do usuário
+                if (user >= 0) {
+                    users.table.addAndGet(user, -interval);
+                }
+                continue;
+            }
+            return;
+        }
+    }
+
+    // 0 = há ficha agora; senão, quanto falta em ns
+    private long waitFor(Stripes stripes, int stripe, long now) {
+        long allowAt = base(stripes.table.get(stripe), now) - burst;
+        return Math.max(0, allowAt - now);
+    }
+
+    private boolean tryConsume(Stripes stripes, int stripe, long now) {
+        while (true) {
+            long tat = stripes.table.get(stripe);
+            long base = base(tat, now);
+            if (base - burst - now > 0) {
+                return false;
+            }
+            if (stripes.table.compareAndSet(stripe, tat, base + interval)) {
+                return true;
+            }
+        }
+    }
+
+    // 0 = faixa nunca usada; instante no passado = balde cheio
+    private static long base(long tat, long now) {
+        return tat == 0 || tat - now < 0 ? now : tat;
+    }
+
+    private static final class Stripes {
+        final AtomicLongArray table;
+        final int mask;
+        final long seed;
+
+        Stripes(int stripes, long seed) {
+            int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+            this.table = new AtomicLongArray(size);
+            this.mask = size - 1;
+            this.seed = seed;
+        }
+
+        int index(String key) {
+            long h = seed;
+            for (int i = 0; i < key.length(); i++) {
+                h = (h ^ key.charAt(i)) * 0x9E3779B97F4A7C15L;
+                h ^= h >>> 29;
+            }
+            h ^= h >>> 32;
+            h *= 0xBF58476D1CE4E5B9L;
+            h ^= h >>> 31;
+            return (int) h & mask;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.trinca.chatseguro.service;
+
+import com.trinca.chatseguro.exception.BadRequestException;
+import com.trinca.chatseguro.exception.ServiceBusyException;
+import com.trinca.chatseguro.model.Message;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Group commit: junta as mensagens de vários remetentes por alguns milissegundos (ou até
+// batch-size linhas) e grava tudo com um único batch JDBC em uma transação. O future de
+// cada remetente só é completado depois do commit do lote em que a mensagem entrou. Se o lote
+// falhar, as linhas são regravadas uma a uma para que só a mensagem problemática falhe.
+//
+// Cada transação tem prazo de commit (commit-deadline, checado no banco pelo trigger da V9) e o
+// timestamp das linhas é escolhido já dentro dela: uma linha mais velha que o prazo está
+// commitada ou nunca vai estar. O SyncService depende disso (visibility-lag > commit-deadline).
+@Service
+public class MessageBatchWriter {
+
+    private static final String INSERT_SQL = """
+            insert into messages (id, conversation_key, sender_id, receiver_id, group_id,
+                                  encrypted_aes_key, key_epoch_id, encrypted_message, iv, timestamp)
+            values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    // Primeiro statement da transação: abre a transação no banco (transaction_timestamp) antes do
+    // timestamp das linhas; o statement_timeout evita que o INSERT fique preso além do prazo
+    private static final String DEADLINE_SQL = """
+            select set_config('chat.commit_deadline', ?, true), set_config('statement_timeout', ?, true)
+            """;
+
+    // Mesmos limites dos @Size de Message
+    static final int MAX_MESSAGE_BYTES = 6000;
+    static final int MAX_KEY_BYTES = 750;
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final int batchSize;
+    private final Duration window;
+    private final BlockingQueue<PendingWrite> queue;
+    private final Duration timeout;
+    private final String commitDeadline;
+
+    private final DistributionSummary batchSizes;
+    private final Timer flushTimer;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public MessageBatchWriter(JdbcTemplate jdbc,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${chat.writer.batch-size:100}") int batchSize,
+                              @Value("${chat.writer.window:5ms}") Duration window,
+                              @Value("${chat.writer.max-pending:10000}") int maxPending,
+                              @Value("${chat.writer.timeout:10s}") Duration timeout,
+                              @Value("${chat.writer.commit-deadline:2s}") Duration commitDeadline) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.window = window;
+        this.queue = new LinkedBlockingQueue<>(maxPending);
+        this.timeout = timeout;
+        this.commitDeadline = commitDeadline.toMillis() + "ms";
+
+        Gauge.builder("chat.writer.batch.max-size", () -> this.batchSize).register(meterRegistry);
+        Gauge.builder("chat.writer.window", () -> this.window.toNanos() / 1_000_000.0)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("chat.writer.pending", queue, BlockingQueue::size).register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("chat.writer.batch.size").register(meterRegistry);
+        this.flushTimer = Timer.builder("chat.writer.flush").register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        worker = new Thread(this::run, "message-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+        // O que o worker não chegou a gravar (ou entrou depois da última volta do loop) falha aqui
+        List<PendingWrite> leftover = new ArrayList<>();
+        queue.drainTo(leftover);
+        leftover.forEach(write -> write.future().completeExceptionally(stopped()));
+    }
+
+    // Envia e espera o commit, no máximo chat.writer.timeout
+    public Message write(Message message) throws Exception {
+        CompletableFuture<Message> future = submit(message);
+        try {
+            return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        } catch (TimeoutException e) {
+            // Pode ainda ser gravada; o cliente reenviaria com outro id, então só avisa que não sabe
+            throw new ServiceBusyException("Timed out waiting for the message to be stored");
+        }
+    }
+
+    public CompletableFuture<Message> submit(Message message) {
+        validate(message);
+        if (message.getId() == null) {
+            message.setId(UUID.randomUUID());
+        }
+
+        PendingWrite write = new PendingWrite(message, new CompletableFuture<>());
+        if (!running) {
+            write.future().completeExceptionally(stopped());
+            return write.future();
+        }
+        try {
+            // Fila cheia = backpressure: o remetente espera, mas só até o timeout
+            if (!queue.offer(write, timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                write.future().completeExceptionally(new ServiceBusyException("Message writer is overloaded"));
+                return write.future();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            write.future().completeExceptionally(e);
+            return write.future();
+        }
+        // stop() pode ter drenado a fila entre a checagem de running e o offer
+        if (!running && queue.remove(write)) {
+            write.future().completeExceptionally(stopped());
+        }
+        return write.future();
+    }
+
+    // O INSERT via JDBC não passa pelo Bean Validation da entidade; mesmos limites de Message
+    private static void validate(Message m) {
+        if (m.getEncryptedMessage() == null || m.getEncryptedMessage().length > MAX_MESSAGE_BYTES) {
+            throw new BadRequestException("encryptedMessage must have at most " + MAX_MESSAGE_BYTES + " bytes");
+        }
+        if (m.getIv() == null || m.getIv().length > MAX_KEY_BYTES) {
+            throw new BadRequestException("iv must have at most " + MAX_KEY_BYTES + " bytes");
+        }
+        if (m.getEncryptedAesKey() != null && m.getEncryptedAesKey().length > MAX_KEY_BYTES) {
+            throw new BadRequestException("encryptedAesKey must have at most " + MAX_KEY_BYTES + " bytes");
+        }
+    }
+
+    private static IllegalStateException stopped() {
+        return new IllegalStateException("Message writer is stopped");
+    }
+
+    private void run() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collect(batch);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void collect(List<PendingWrite> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + window.toNanos();
+
+        while (batch.size() < batchSize) {
+            if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        batchSizes.record(batch.size());
+        try {
+            insert(batch);
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).future().completeExceptionally(e);
+                return;
+            }
+            // Uma linha ruim derrubou o lote inteiro: cada mensagem tenta de novo sozinha
+            for (PendingWrite write : batch) {
+                try {
+                    insert(List.of(write));
+                } catch (RuntimeException rowError) {
+                    write.future().completeExceptionally(rowError);
+                }
+            }
+        }
+    }
+
+    // Um batch JDBC em uma transação; completa os futures só depois do commit
+    private void insert(List<PendingWrite> batch) {
+        KeyHolder seqs = new GeneratedKeyHolder();
+        flushTimer.record(() -> tx.executeWithoutResult(status -> {
+            jdbc.queryForList(DEADLINE_SQL, commitDeadline, commitDeadline);
+            // timestamp = depois do início da transação, não a criação: a espera na fila não conta
+            LocalDateTime now = LocalDateTime.now();
+            batch.forEach(write -> write.message().setTimestamp(now));
+            jdbc.batchUpdate(con -> con.prepareStatement(INSERT_SQL, new String[]{"seq"}),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            bind(ps, batch.get(i).message());
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return batch.size();
+                        }
+                    }, seqs);
+        }));
+
+        // seq vem do banco na ordem de inserção; como há um único escritor, é também a ordem de commit
+        List<Map<String, Object>> keys = seqs.getKeyList();
+        for (int i = 0; i < batch.size(); i++) {
+            Message m = batch.get(i).message();
+            m.setSeq(((Number) keys.get(i).get("seq")).longValue());
+            batch.get(i).future().complete(m);
+        }
+    }
+
+    private static void bind(PreparedStatement ps, Message m) throws SQLException {
+        ps.setObject(1, m.getId());
+        ps.setObject(2, m.getConversationKey());
+        ps.setObject(3, m.getSender().getId());
+        ps.setObject(4, m.getReceiver() != null ? m.getReceiver().getId() : null, Types.OTHER);
+        ps.setObject(5, m.getGroupId(), Types.OTHER);
+        ps.setBytes(6, m.getEncryptedAesKey());
+        ps.setObject(7, m.getKeyEpochId(), Types.OTHER);
+        ps.setBytes(8, m.getEncryptedMessage());
+        ps.setBytes(9, m.getIv());
+        ps.setObject(10, m.getTimestamp());
+    }
+
+    private record PendingWrite(Message message, CompletableFuture<Message> future) {
+    }
+}
@@ -0,0 +1,146 @@
+package com.trinca.chatseguro.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Partições mensais de messages (V6): mantém criadas as dos próximos meses e aplica a retenção
+// removendo partições inteiras cujo mês terminou antes de now - max-age. Com drop=false a
+// partição só é desanexada e a tabela fica para arquivamento. max-age=0 guarda tudo. Um detach
+// interrompido é finalizado e, com drop=true, partições desanexadas que sobraram de uma rodada
+// que caiu antes do DROP também são removidas.
+@Service
+public class MessagePartitionMaintenance {
+
+    private static final Logger log = LoggerFactory.getLogger(MessagePartitionMaintenance.class);
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    // Partições mensais ainda anexadas ou órfãs (desanexadas e não removidas); detach_pending =
+    // DETACH CONCURRENTLY interrompido no meio, que bloqueia qualquer outro detach em messages
+    private static final String LIST_SQL = """
+            select c.relname, i.inhrelid is not null as attached, coalesce(i.inhdetachpending, false) as detach_pending
+            from pg_class c
+            left join pg_inherits i on i.inhrelid = c.oid and i.inhparent = 'messages'::regclass
+            where c.relkind = 'r'
+              and c.relnamespace = (select relnamespace from pg_class where oid = 'messages'::regclass)
+              and c.relname ~ '^messages_p[0-9]{6}$'
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final Duration maxAge;
+    private final boolean drop;
+    private final int monthsAhead;
+    private final Duration interval;
+    private final Counter purged;
+
+    private ScheduledExecutorService scheduler;
+
+    public MessagePartitionMaintenance(JdbcTemplate jdbc,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${chat.retention.max-age:0d}") Duration maxAge,
+                                       @Value("${chat.retention.drop:true}") boolean drop,
+                                       @Value("${chat.partitions.months-ahead:2}") int monthsAhead,
+                                       @Value("${chat.partitions.check-interval:6h}") Duration interval) {
+        this.jdbc = jdbc;
+        this.maxAge = maxAge;
+        this.drop = drop;
+        this.monthsAhead = monthsAhead;
+        this.interval = interval;
+        this.purged = Counter.builder("chat.retention.partitions.purged").register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "message-partitions");
+            t.setDaemon(true);
+            return t;
+        });
+        // Sem partição default: um INSERT fora das partições existentes falharia, então roda já na subida
+        scheduler.scheduleWithFixedDelay(this::run, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void run() {
+        try {
+            ensurePartitions(LocalDate.now());
+            purge(LocalDateTime.now());
+        } catch (RuntimeException e) {
+            log.error("Message partition maintenance failed", e);
+        }
+    }
+
+    // Do mês anterior (folga para diferença de fuso entre JVM e banco) até months-ahead meses à frente
+    void ensurePartitions(LocalDate today) {
+        YearMonth current = YearMonth.from(today);
+        for (int i = -1; i <= monthsAhead; i++) {
+            jdbc.queryForObject("select ensure_message_partition(?)", String.class,
+                    current.plusMonths(i).atDay(1));
+        }
+    }
+
+    // Partições cujo mês inteiro é anterior ao corte; devolve os nomes removidos
+    List<String> purge(LocalDateTime now) {
+        List<String> removed = new ArrayList<>();
+        if (maxAge.isZero() || maxAge.isNegative()) {
+            return removed;
+        }
+        LocalDateTime cutoff = now.minus(maxAge);
+
+        for (Partition partition : jdbc.query(LIST_SQL, (rs, i) -> new Partition(
+                rs.getString("relname"), rs.getBoolean("attached"), rs.getBoolean("detach_pending")))) {
+            // Um detach que caiu no meio (queda do nó, timeout) precisa ser concluído antes de
+            // qualquer outro; a partição já não recebe escritas, então termina mesmo fora do corte
+            if (partition.detachPending()) {
+                jdbc.execute("alter table messages detach partition " + partition.name() + " finalize");
+                log.warn("Retention: finalized interrupted detach of partition {}", partition.name());
+            }
+            YearMonth month = month(partition.name());
+            if (month.plusMonths(1).atDay(1).atStartOfDay().isAfter(cutoff)) {
+                continue;
+            }
+            if (partition.attached() && !partition.detachPending()) {
+                // CONCURRENTLY não bloqueia leituras/escritas nas outras partições; roda fora de transação
+                jdbc.execute("alter table messages detach partition " + partition.name() + " concurrently");
+            } else if (!partition.attached() && !drop) {
+                // Já arquivada numa rodada anterior
+                continue;
+            }
+            if (drop) {
+                jdbc.execute("drop table " + partition.name());
+            }
+            purged.increment();
+            removed.add(partition.name());
+            log.info("Retention: {} partition {} (older than {})", drop ? "dropped" : "detached", partition.name(), cutoff);
+        }
+        return removed;
+    }
+
+    private static YearMonth month(String partition) {
+        return YearMonth.parse(partition.substring("messages_p".length()), SUFFIX);
+    }
+
+    private record Partition(String name, boolean attached, boolean detachPending) {
+    }
+}
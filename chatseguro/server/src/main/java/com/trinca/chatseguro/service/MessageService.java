@@ -1,29 +1,98 @@
 package com.trinca.chatseguro.service;
 
+import com.trinca.chatseguro.dto.ConversationPageDto;
+import com.trinca.chatseguro.dto.MessageCursor;
+import com.trinca.chatseguro.dto.MessageDto;
 import com.trinca.chatseguro.model.Message;
 import com.trinca.chatseguro.model.User;
 import com.trinca.chatseguro.repository.MessageRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
+import java.util.*;
+import java.util.function.Function;
 
 @Service
 public class MessageService {
 
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE     = 200;
+
     @Autowired
     private MessageRepository repo;
 
-    public List<Message> getConversation(User me, User other) {
-        List<Message> sent     = repo.findBySenderAndReceiverOrderByTimestampAsc(me, other);
-        List<Message> received = repo.findBySenderAndReceiverOrderByTimestampAsc(other, me);
+    @Autowired
+    private KeyEpochService keyEpochService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Timer conversationTimer;
+    private Timer pageTimer;
+
+    @PostConstruct
+    void registerMeters() {
+        conversationTimer = historyQuery(meterRegistry, "conversation");
+        pageTimer = historyQuery(meterRegistry, "page");
+    }
+
+    // Tempo da consulta no banco (chat.history.query, query=conversation|page|inbox|sent)
+    public static Timer historyQuery(MeterRegistry registry, String query) {
+        return Timer.builder("chat.history.query")
+                .tag("query", query)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    public List<MessageDto> getConversation(User me, User other) {
+        return conversationTimer.record(() -> repo.findConversation(Message.conversationKey(me, other)));
+    }
+
+    public ConversationPageDto getConversationPage(User me, User other, String before, int limit) {
+        return page(Message.conversationKey(me, other), before, limit, keyEpochService::wrappedKeys);
+    }
+
+    // Mesmas consultas paginadas: a conversation_key de uma mensagem de grupo é o id do grupo.
+    // As chaves da página são as embrulhadas para quem lê. Membership é checado pelo GroupService.
+    public ConversationPageDto getGroupPage(UUID groupId, User reader, String before, int limit) {
+        return page(groupId, before, limit, ids -> keyEpochService.memberKeys(ids, reader.getId()));
+    }
+
+    private ConversationPageDto page(UUID key, String before, int limit,
+                                     Function<Set<UUID>, Map<UUID, byte[]>> epochKeys) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // Busca uma linha a mais só para saber se ainda existe página anterior
+        Pageable page = PageRequest.ofSize(size + 1);
+
+        MessageCursor cursor = before == null || before.isBlank() ? null : MessageCursor.decode(before);
+        List<MessageDto> rows = pageTimer.record(() -> cursor == null
+                ? repo.findConversationLatest(key, page)
+                : repo.findConversationBefore(key, cursor.timestamp(), cursor.id(), page));
+
+        boolean hasMore = rows.size() > size;
+        if (hasMore) {
+            rows = rows.subList(0, size);
+        }
+
+        List<MessageDto> messages = new ArrayList<>(rows);
+        Set<UUID> epochIds = new HashSet<>();
+        for (MessageDto m : messages) {
+            if (m.keyEpochId != null) {
+                epochIds.add(m.keyEpochId);
+            }
+        }
+        Collections.reverse(messages);
 
-        List<Message> all = new ArrayList<>();
-        all.addAll(sent);
-        all.addAll(received);
-        all.sort(Comparator.comparing(Message::getTimestamp));
-        return all;
+        String nextCursor = null;
+        if (hasMore) {
+            MessageDto oldest = rows.get(rows.size() - 1);
+            nextCursor = new MessageCursor(oldest.timestamp, oldest.id).encode();
+        }
+        return new ConversationPageDto(messages, epochKeys.apply(epochIds), nextCursor);
     }
 }
@@ -0,0 +1,89 @@
+package com.trinca.chatseguro.service;
+
+import com.trinca.chatseguro.exception.ServiceBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// BCrypt fora das threads de requisição: um pool fixo e pequeno de threads de plataforma com
+// fila limitada. Uma rajada de logins ocupa no máximo "threads" núcleos; com a fila cheia o
+// pedido falha na hora (503) em vez de esperar e segurar recursos do resto do servidor.
+@Service
+public class PasswordHasher {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final Timer encodeTimer;
+    private final Timer matchTimer;
+    private final Counter rejected;
+
+    public PasswordHasher(PasswordEncoder passwordEncoder,
+                          MeterRegistry meterRegistry,
+                          @Value("${security.hash.threads:0}") int threads,
+                          @Value("${security.hash.queue-size:64}") int queueSize) {
+        this.passwordEncoder = passwordEncoder;
+
+        // 0 = metade dos núcleos, deixando o resto para o tráfego de mensagens
+        int size = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                r -> {
+                    Thread t = new Thread(r, "password-hash-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.encodeTimer = Timer.builder("auth.hash").tag("op", "encode").register(meterRegistry);
+        this.matchTimer = Timer.builder("auth.hash").tag("op", "match").register(meterRegistry);
+        this.rejected = Counter.builder("auth.hash.rejected").register(meterRegistry);
+        Gauge.builder("auth.hash.queue", executor, e -> e.getQueue().size()).register(meterRegistry);
+    }
+
+    public String encode(String rawPassword) {
+        return run(encodeTimer, () -> passwordEncoder.encode(rawPassword));
+    }
+
+    public boolean matches(String rawPassword, String hashedPassword) {
+        return run(matchTimer, () -> passwordEncoder.matches(rawPassword, hashedPassword));
+    }
+
+    private <T> T run(Timer timer, Supplier<T> task) {
+        Future<T> future;
+        try {
+            // O tempo medido é só o do hash; a espera na fila aparece em auth.hash.queue
+            future = executor.submit(() -> timer.record(task));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new ServiceBusyException("Authentication is busy, try again shortly");
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ServiceBusyException("Interrupted while hashing password");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,83 @@
+package com.trinca.chatseguro.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.trinca.chatseguro.dto.PublicKeyDto;
+import com.trinca.chatseguro.event.UserChangedEvent;
+import com.trinca.chatseguro.exception.BadRequestException;
+import com.trinca.chatseguro.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+
+// Diretório de chaves públicas: cache username -> chave com ETag forte (hash da chave).
+// A busca em lote resolve todos os usernames ausentes do cache em um único SELECT.
+// Uma rotação de chave invalida o cache de todos os nós (UserChangedEvent repassado pelo
+// MessageFanout); o TTL curto limita a janela de um nó que estava desconectado no momento.
+@Service
+public class PublicKeyDirectory {
+
+    public static final int MAX_BULK = 200;
+
+    private final UserRepository userRepository;
+    private final Cache<String, PublicKeyDto> keys;
+
+    public PublicKeyDirectory(UserRepository userRepository,
+                              @Value("${chat.public-keys.ttl:2m}") Duration ttl,
+                              @Value("${chat.public-keys.max-size:100000}") long maxSize) {
+        this.userRepository = userRepository;
+        this.keys = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public Optional<PublicKeyDto> find(String username) {
+        return Optional.ofNullable(findAll(List.of(username)).get(username));
+    }
+
+    // Usernames inexistentes simplesmente não aparecem no resultado
+    public Map<String, PublicKeyDto> findAll(Collection<String> usernames) {
+        if (usernames.size() > MAX_BULK) {
+            throw new BadRequestException("At most " + MAX_BULK + " usernames per lookup");
+        }
+        return keys.getAll(usernames, missing -> {
+            Map<String, PublicKeyDto> loaded = new HashMap<>();
+            for (Object[] row : userRepository.findPublicKeys(new HashSet<>(missing))) {
+                String username = (String) row[0];
+                String publicKey = (String) row[1];
+                loaded.put(username, new PublicKeyDto(username, publicKey, etag(publicKey)));
+            }
+            return loaded;
+        });
+    }
+
+    // ETag de um conjunto de chaves: muda se qualquer chave entrar, sair ou mudar
+    public static String etag(Collection<PublicKeyDto> entries) {
+        StringBuilder all = new StringBuilder();
+        entries.stream()
+                .sorted(Comparator.comparing(k -> k.username))
+                .forEach(k -> all.append(k.username).append(':').append(k.etag).append('\n'));
+        return etag(all.toString());
+    }
+
+    private static String etag(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 18)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        keys.invalidate(event.username());
+    }
+}
@@ -0,0 +1,221 @@
+package com.trinca.chatseguro.service;
+
+import com.trinca.chatseguro.dto.ReceiptDto;
+import com.trinca.chatseguro.exception.BadRequestException;
+import com.trinca.chatseguro.fanout.MessageFanout;
+import com.trinca.chatseguro.model.ConversationReceipt;
+import com.trinca.chatseguro.model.Message;
+import com.trinca.chatseguro.model.User;
+import com.trinca.chatseguro.repository.ConversationReceiptRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Recibos de entrega/leitura como marca d'água por (conversa, leitor) em vez de flags por
+// mensagem. Os acks do WebSocket só fazem max() em memória; a cada flush-interval as marcas
+// que andaram são gravadas num único batch e cada remetente recebe um frame agregado
+// { "leitor": { "delivered": seq, "read": seq }, ... } em /topic/receipts/{remetente}.
+// Marcas só andam para frente; o cliente guarda o maior valor que já viu. No flush cada marca é
+// limitada ao maior seq que o remetente de fato mandou ao leitor, então um ack de seq inexistente
+// (futuro ou de outra conversa) não adianta o recibo.
+@Service
+public class ReceiptService {
+
+    public static final String TOPIC_PREFIX = "/topic/receipts/";
+
+    private static final Logger log = LoggerFactory.getLogger(ReceiptService.class);
+
+    private static final String UPSERT_SQL = """
+            insert into conversation_receipts (conversation_key, reader_id, delivered_seq, read_seq, updated_at)
+            values (?, ?, ?, ?, now())
+            on conflict (conversation_key, reader_id)
+            do update set delivered_seq = greatest(conversation_receipts.delivered_seq, excluded.delivered_seq),
+                          read_seq      = greatest(conversation_receipts.read_seq, excluded.read_seq),
+                          updated_at    = now()
+            """;
+
+    // Teto de cada marca, para todas as conversas do lote num statement só
+    private static final String MAX_SEQ_SQL = """
+            select k.conversation_key, k.reader_id,
+                   (select coalesce(max(m.seq), 0) from messages m
+                    where m.receiver_id = k.reader_id and m.conversation_key = k.conversation_key) as max_seq
+            from unnest(?::uuid[], ?::uuid[]) as k(conversation_key, reader_id)
+            """;
+
+    private final UserDirectory userDirectory;
+    private final ConversationReceiptRepository receiptRepository;
+    private final MessageFanout fanout;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final Duration flushInterval;
+
+    // Marcas ainda não gravadas; acks repetidos da mesma conversa viram uma linha só
+    private final Map<ConversationReceipt.Key, Mark> pending = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService flusher;
+
+    public ReceiptService(UserDirectory userDirectory,
+                          ConversationReceiptRepository receiptRepository,
+                          MessageFanout fanout,
+                          JdbcTemplate jdbc,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${chat.receipts.flush-interval:1s}") Duration flushInterval) {
+        this.userDirectory = userDirectory;
+        this.receiptRepository = receiptRepository;
+        this.fanout = fanout;
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.flushInterval = flushInterval;
+    }
+
+    @PostConstruct
+    void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "receipt-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flush, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        flusher.shutdownNow();
+        flush();
+    }
+
+    // reader confirma ter recebido/lido as mensagens de sender até os seqs informados (0 = sem mudança)
+    public void ack(String reader, String sender, long deliveredSeq, long readSeq) {
+        if (deliveredSeq < 0 || readSeq < 0) {
+            throw new BadRequestException("Receipt seq must not be negative");
+        }
+        if (deliveredSeq == 0 && readSeq == 0) {
+            return;
+        }
+        User me = userDirectory.resolve(reader);
+        User other = userDirectory.resolve(sender);
+        if (me.getId().equals(other.getId())) {
+            throw new BadRequestException("Cannot send receipts to yourself");
+        }
+
+        // Lida implica entregue
+        Mark mark = new Mark(me.getUsername(), other.getUsername(), Math.max(deliveredSeq, readSeq), readSeq);
+        pending.merge(new ConversationReceipt.Key(Message.conversationKey(me, other), me.getId()), mark, Mark::max);
+    }
+
+    // Até onde other recebeu/leu o que me enviou, incluindo acks ainda não gravados
+    public ReceiptDto receiptsOf(User me, User other) {
+        ConversationReceipt.Key key = new ConversationReceipt.Key(Message.conversationKey(me, other), other.getId());
+        ReceiptDto receipt = receiptRepository.findById(key)
+                .map(r -> new ReceiptDto(r.getDeliveredSeq(), r.getReadSeq()))
+                .orElseGet(ReceiptDto::new);
+
+        Mark unsaved = pending.get(key);
+        if (unsaved != null) {
+            unsaved = unsaved.cap(maxSeqs(List.of(key)).getOrDefault(key, 0L));
+            receipt.delivered = Math.max(receipt.delivered, unsaved.delivered());
+            receipt.read = Math.max(receipt.read, unsaved.read());
+        }
+        return receipt;
+    }
+
+    void flush() {
+        List<Map.Entry<ConversationReceipt.Key, Mark>> batch = new ArrayList<>();
+        for (ConversationReceipt.Key key : pending.keySet()) {
+            Mark mark = pending.remove(key);
+            if (mark != null) {
+                batch.add(Map.entry(key, mark));
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<Map.Entry<ConversationReceipt.Key, Mark>> capped = new ArrayList<>();
+        try {
+            Map<ConversationReceipt.Key, Long> maxSeqs = maxSeqs(batch.stream().map(Map.Entry::getKey).toList());
+            for (Map.Entry<ConversationReceipt.Key, Mark> entry : batch) {
+                Mark mark = entry.getValue().cap(maxSeqs.getOrDefault(entry.getKey(), 0L));
+                if (mark.delivered() > 0) {
+                    capped.add(Map.entry(entry.getKey(), mark));
+                }
+            }
+            if (capped.isEmpty()) {
+                return;
+            }
+            tx.executeWithoutResult(status -> jdbc.batchUpdate(UPSERT_SQL, capped, capped.size(), (ps, entry) -> {
+                ps.setObject(1, entry.getKey().conversationKey());
+                ps.setObject(2, entry.getKey().readerId());
+                ps.setLong(3, entry.getValue().delivered());
+                ps.setLong(4, entry.getValue().read());
+            }));
+        } catch (RuntimeException e) {
+            log.warn("Receipt flush of {} marks failed, retrying on the next flush", batch.size(), e);
+            // Devolve as marcas para o próximo flush; o max() absorve acks que chegaram nesse meio tempo
+            batch.forEach(entry -> pending.merge(entry.getKey(), entry.getValue(), Mark::max));
+            return;
+        }
+
+        // Um frame por remetente com todos os leitores que avançaram neste flush
+        Map<String, Map<String, ReceiptDto>> notices = new HashMap<>();
+        for (Map.Entry<ConversationReceipt.Key, Mark> entry : capped) {
+            Mark mark = entry.getValue();
+            notices.computeIfAbsent(mark.sender(), k -> new LinkedHashMap<>())
+                    .put(mark.reader(), new ReceiptDto(mark.delivered(), mark.read()));
+        }
+        notices.forEach((sender, receipts) -> {
+            try {
+                fanout.deliver(sender, TOPIC_PREFIX + sender, receipts);
+            } catch (RuntimeException e) {
+                // Já está gravado; o remetente pode consultar o estado pelo REST
+                log.warn("Receipt delivery to {} failed", sender, e);
+            }
+        });
+    }
+
+    // Maior seq de conversa direta entregue a cada leitor (0 = nenhuma mensagem)
+    private Map<ConversationReceipt.Key, Long> maxSeqs(Collection<ConversationReceipt.Key> keys) {
+        UUID[] conversations = keys.stream().map(ConversationReceipt.Key::conversationKey).toArray(UUID[]::new);
+        UUID[] readers = keys.stream().map(ConversationReceipt.Key::readerId).toArray(UUID[]::new);
+        Map<ConversationReceipt.Key, Long> maxSeqs = new HashMap<>();
+        jdbc.query(con -> {
+            PreparedStatement ps = con.prepareStatement(MAX_SEQ_SQL);
+            ps.setArray(1, con.createArrayOf("uuid", conversations));
+            ps.setArray(2, con.createArrayOf("uuid", readers));
+            return ps;
+        }, (RowCallbackHandler) rs -> maxSeqs.put(
+                new ConversationReceipt.Key(rs.getObject(1, UUID.class), rs.getObject(2, UUID.class)), rs.getLong(3)));
+        return maxSeqs;
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+
+    record Mark(String reader, String sender, long delivered, long read) {
+
+        Mark max(Mark other) {
+            return new Mark(reader, sender, Math.max(delivered, other.delivered), Math.max(read, other.read));
+        }
+
+        Mark cap(long maxSeq) {
+            return new Mark(reader, sender, Math.min(delivered, maxSeq), Math.min(read, maxSeq));
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.trinca.chatseguro.service;
+
+import com.trinca.chatseguro.dto.MessageDto;
+import com.trinca.chatseguro.dto.SyncBatchDto;
+import com.trinca.chatseguro.exception.BadRequestException;
+import com.trinca.chatseguro.model.DeviceAck;
+import com.trinca.chatseguro.model.User;
+import com.trinca.chatseguro.repository.DeviceAckRepository;
+import com.trinca.chatseguro.repository.MessageRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Stream;
+
+// Sync incremental da caixa: o dispositivo informa a última posição confirmada e recebe só o
+// que chegou depois, em lotes limitados. O custo de reconectar depende do que foi perdido.
+//
+// O seq é gerado no INSERT mas só fica visível no commit; com escritores em vários nós, o seq N
+// pode ainda estar sem commit quando N+1 já aparece. Por isso sync/export só devolvem linhas
+// gravadas há mais de visibility-lag e os acks são limitados ao maior seq dentro dessa janela.
+// Isso só vale porque o MessageBatchWriter escolhe o timestamp dentro da transação e o banco
+// recusa o commit depois de chat.writer.commit-deadline (V9); a folga entre os dois cobre o
+// flush do commit e a diferença de relógio entre os nós. Mensagens recentes chegam pelo WebSocket.
+@Service
+public class SyncService {
+
+    public static final int DEFAULT_BATCH_SIZE = 200;
+    public static final int MAX_BATCH_SIZE     = 1000;
+    public static final int MAX_DEVICE_ID      = 64;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private DeviceAckRepository deviceAckRepository;
+
+    @Autowired
+    private UserDirectory userDirectory;
+
+    @Autowired
+    private KeyEpochService keyEpochService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${chat.sync.visibility-lag:5s}")
+    private Duration visibilityLag;
+
+    @Value("${chat.writer.commit-deadline:2s}")
+    private Duration commitDeadline;
+
+    @PostConstruct
+    void checkVisibilityLag() {
+        if (visibilityLag.compareTo(commitDeadline) <= 0) {
+            throw new IllegalStateException("chat.sync.visibility-lag (" + visibilityLag
+                    + ") must be greater than chat.writer.commit-deadline (" + commitDeadline + ")");
+        }
+    }
+
+    // after == null: continua da última posição confirmada pelo dispositivo
+    public SyncBatchDto sync(String username, String deviceId, Long after, int limit) {
+        validateDevice(deviceId);
+        User user = userDirectory.resolve(username);
+        int size = Math.max(1, Math.min(limit, MAX_BATCH_SIZE));
+
+        long from = after != null
+                ? after
+                : deviceAckRepository.findById(new DeviceAck.Key(user.getId(), deviceId))
+                        .map(DeviceAck::getLastSeq)
+                        .orElse(0L);
+
+        List<MessageDto> messages = messageRepository.findMailboxAfter(user.getId(), from, visibleBefore(), size + 1);
+        boolean hasMore = messages.size() > size;
+        if (hasMore) {
+            messages = messages.subList(0, size);
+        }
+
+        // Épocas diretas têm uma chave só; as de grupo, uma por membro (a do próprio usuário)
+        Set<UUID> epochIds = new HashSet<>();
+        Set<UUID> groupEpochIds = new HashSet<>();
+        for (MessageDto m : messages) {
+            if (m.keyEpochId != null) {
+                (m.groupId != null ? groupEpochIds : epochIds).add(m.keyEpochId);
+            }
+        }
+        Map<UUID, byte[]> keys = keyEpochService.wrappedKeys(epochIds);
+        keys.putAll(keyEpochService.memberKeys(groupEpochIds, user.getId()));
+
+        long nextAfter = messages.isEmpty() ? from : messages.get(messages.size() - 1).seq;
+        return new SyncBatchDto(messages, keys, nextAfter, hasMore);
+    }
+
+    // Export completo da caixa em NDJSON (um MessageDto por linha, em ordem de seq), conversas de
+    // grupo incluídas. As linhas são lidas de um cursor e escritas direto na resposta, então a
+    // memória não depende do tamanho da conta; para retomar, basta pedir de novo com after = seq
+    // da última linha.
+    public StreamingResponseBody export(String username, long after) {
+        if (after < 0) {
+            throw new BadRequestException("Invalid export position");
+        }
+        // Resolvido antes de começar a resposta, para que um erro ainda vire um status HTTP
+        UUID userId = userDirectory.resolve(username).getId();
+        LocalDateTime visibleBefore = visibleBefore();
+
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(true);
+        return out -> tx.executeWithoutResult(status -> writeMailbox(userId, after, visibleBefore, out));
+    }
+
+    private void writeMailbox(UUID userId, long after, LocalDateTime visibleBefore, OutputStream out) {
+        try (Stream<MessageDto> rows = messageRepository.streamMailboxAfter(userId, after, visibleBefore);
+             JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.setRootValueSeparator(null);
+            for (Iterator<MessageDto> it = rows.iterator(); it.hasNext(); ) {
+                objectMapper.writeValue(json, it.next());
+                json.writeRaw('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void ack(String username, String deviceId, long seq) {
+        validateDevice(deviceId);
+        User user = userDirectory.resolve(username);
+        // Um seq visto ao vivo pode estar à frente de um seq menor ainda sem commit: confirmar
+        // além da janela pularia essa mensagem para sempre, já que o ack nunca volta
+        long safe = Math.min(seq, messageRepository.findMailboxWatermark(user.getId(), visibleBefore()));
+        if (safe > 0) {
+            deviceAckRepository.ack(user.getId(), deviceId, safe);
+        }
+    }
+
+    private LocalDateTime visibleBefore() {
+        return LocalDateTime.now().minus(visibilityLag);
+    }
+
+    private static void validateDevice(String deviceId) {
+        if (deviceId == null || deviceId.isBlank() || deviceId.length() > MAX_DEVICE_ID) {
+            throw new BadRequestException("Invalid device id");
+        }
+    }
+}
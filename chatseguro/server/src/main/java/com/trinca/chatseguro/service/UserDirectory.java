@@ -0,0 +1,54 @@
+package com.trinca.chatseguro.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.trinca.chatseguro.event.UserChangedEvent;
+import com.trinca.chatseguro.exception.UserNotFoundException;
+import com.trinca.chatseguro.model.User;
+import com.trinca.chatseguro.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+// Resolve username -> id uma vez e devolve referências leves (User.reference) para o caminho
+// de envio/leitura; id e username nunca mudam, então o cache só expira por tamanho/TTL.
+@Service
+public class UserDirectory {
+
+    private final UserRepository userRepository;
+    private final Cache<String, User> references;
+
+    public UserDirectory(UserRepository userRepository,
+                         @Value("${chat.user-directory.ttl:1h}") Duration ttl,
+                         @Value("${chat.user-directory.max-size:100000}") long maxSize) {
+        this.userRepository = userRepository;
+        this.references = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(ttl)
+                .build();
+    }
+
+    public User resolve(String username) {
+        return find(username).orElseThrow(() -> new UserNotFoundException(username));
+    }
+
+    public Optional<User> find(String username) {
+        User ref = references.getIfPresent(username);
+        if (ref != null) {
+            return Optional.of(ref);
+        }
+
+        Optional<User> loaded = userRepository.findByUsername(username)
+                .map(u -> User.reference(u.getId(), u.getUsername()));
+        loaded.ifPresent(u -> references.put(username, u));
+        return loaded;
+    }
+
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        references.invalidate(event.username());
+    }
+}
@@ -1,9 +1,12 @@
 package com.trinca.chatseguro.service;
 
+import com.trinca.chatseguro.event.UserChangedEvent;
+import com.trinca.chatseguro.exception.BadRequestException;
+import com.trinca.chatseguro.exception.UserNotFoundException;
 import com.trinca.chatseguro.model.User;
 import com.trinca.chatseguro.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
@@ -15,17 +18,49 @@ public class UserService {
     private UserRepository userRepository;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHasher passwordHasher;
+
+    @Autowired
+    private ApplicationEventPublisher events;
 
     public User register(String username, String email, String rawPassword, String publicKey) throws Exception {
         if (userRepository.existsByUsername(username)) {
             throw new Exception("Username already exists.");
         }
 
-        String hashedPassword = passwordEncoder.encode(rawPassword);
+        String hashedPassword = passwordHasher.encode(rawPassword);
 
         User user = new User(username, email, hashedPassword, publicKey);
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        events.publishEvent(new UserChangedEvent(username));
+        return saved;
+    }
+
+    // Senha e chave pública só mudam com a senha atual: um JWT vazado não basta para tomar a
+    // conta nem para trocar a chave RSA (o que permitiria ler as mensagens seguintes)
+    public void changePassword(String username, String currentPassword, String rawPassword) {
+        User user = requireCurrentPassword(username, currentPassword);
+
+        user.setPasswordHash(passwordHasher.encode(rawPassword));
+        userRepository.save(user);
+        events.publishEvent(new UserChangedEvent(username));
+    }
+
+    public void updatePublicKey(String username, String currentPassword, String publicKey) {
+        User user = requireCurrentPassword(username, currentPassword);
+
+        user.setPublicKey(publicKey);
+        userRepository.save(user);
+        events.publishEvent(new UserChangedEvent(username));
+    }
+
+    private User requireCurrentPassword(String username, String currentPassword) {
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new UserNotFoundException(username));
+        if (currentPassword == null || !passwordHasher.matches(currentPassword, user.getPasswordHash())) {
+            throw new BadRequestException("Invalid current password");
+        }
+        return user;
     }
 
     public Optional<User> findByUsername(String username) {
@@ -33,6 +68,6 @@ public class UserService {
     }
 
     public boolean verifyPassword(String rawPassword, String hashedPassword) {
-        return passwordEncoder.matches(rawPassword, hashedPassword);
+        return passwordHasher.matches(rawPassword, hashedPassword);
     }
 }
@@ -0,0 +1,2 @@
+-- Ramo de grupos da caixa (sync/export): mensagens dos grupos do usuário depois de um seq
+create index idx_messages_group_seq on messages (group_id, seq) where group_id is not null;
@@ -0,0 +1,27 @@
+-- Esquema inicial (antes gerado pelo Hibernate com ddl-auto=create-drop)
+
+create table users (
+    id            uuid         not null primary key,
+    username      varchar(255) not null unique,
+    email         varchar(255) not null,
+    password_hash varchar(255) not null,
+    public_key    varchar(700) not null
+);
+
+create table messages (
+    id                uuid          not null primary key,
+    conversation_key  uuid          not null,
+    sender_id         uuid          not null references users (id),
+    receiver_id       uuid          not null references users (id),
+    encrypted_aes_key varchar(1000) not null,
+    encrypted_message varchar(8000) not null,
+    iv                varchar(1000) not null,
+    timestamp         timestamp(6)  not null
+);
+
+-- Histórico da conversa: range scan em (conversation_key) ordenado por (timestamp, id)
+create index idx_messages_conversation on messages (conversation_key, timestamp, id);
+
+-- Caixa de entrada e itens enviados
+create index idx_messages_receiver on messages (receiver_id, timestamp);
+create index idx_messages_sender on messages (sender_id, timestamp);
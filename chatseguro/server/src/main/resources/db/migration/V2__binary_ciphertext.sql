@@ -0,0 +1,5 @@
+-- Chave cifrada, mensagem cifrada e IV passam de base64 (varchar) para bytea
+alter table messages
+    alter column encrypted_aes_key type bytea using decode(encrypted_aes_key, 'base64'),
+    alter column encrypted_message type bytea using decode(encrypted_message, 'base64'),
+    alter column iv type bytea using decode(iv, 'base64');
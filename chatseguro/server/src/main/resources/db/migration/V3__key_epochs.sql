@@ -0,0 +1,17 @@
+-- Chave AES embrulhada guardada uma vez por época (conversa + direção)
+create table key_epochs (
+    id               uuid         not null primary key,
+    conversation_key uuid         not null,
+    sender_id        uuid         not null references users (id),
+    receiver_id      uuid         not null references users (id),
+    wrapped_key      bytea        not null,
+    created_at       timestamp(6) not null
+);
+
+create index idx_key_epochs_conversation on key_epochs (conversation_key, created_at);
+
+-- Mensagens passam a referenciar a época; a chave por mensagem continua aceita (clientes antigos)
+alter table messages
+    add column key_epoch_id uuid references key_epochs (id),
+    alter column encrypted_aes_key drop not null,
+    add constraint chk_messages_key check (encrypted_aes_key is not null or key_epoch_id is not null);
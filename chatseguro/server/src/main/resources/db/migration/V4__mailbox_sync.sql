@@ -0,0 +1,14 @@
+-- Posição de cada mensagem na ordem de commit (o MessageBatchWriter é o único escritor)
+alter table messages add column seq bigint generated always as identity;
+
+create index idx_messages_receiver_seq on messages (receiver_id, seq);
+create index idx_messages_sender_seq on messages (sender_id, seq);
+
+-- Último seq confirmado por dispositivo
+create table device_acks (
+    user_id    uuid         not null references users (id),
+    device_id  varchar(64)  not null,
+    last_seq   bigint       not null,
+    updated_at timestamp(6) not null,
+    primary key (user_id, device_id)
+);
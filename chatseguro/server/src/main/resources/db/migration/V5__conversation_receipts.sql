@@ -0,0 +1,10 @@
+-- Recibos por conversa: até onde (seq) o leitor recebeu/leu as mensagens que o outro lado enviou.
+-- Uma linha por (conversa, leitor) em vez de flags por mensagem; só anda para frente.
+create table conversation_receipts (
+    conversation_key uuid         not null,
+    reader_id        uuid         not null references users (id),
+    delivered_seq    bigint       not null default 0,
+    read_seq         bigint       not null default 0,
+    updated_at       timestamp(6) not null,
+    primary key (conversation_key, reader_id)
+);
@@ -0,0 +1,66 @@
+-- messages passa a ser particionada por mês de timestamp. A retenção (MessagePartitionMaintenance)
+-- remove partições inteiras em vez de apagar linha a linha; o histórico, a caixa e o sync
+-- continuam usando os mesmos índices, agora por partição.
+
+-- Cria (se faltar) a partição do mês que contém p_day; também usada pela manutenção periódica
+create function ensure_message_partition(p_day date) returns text
+language plpgsql as $$
+declare
+    from_day date := date_trunc('month', p_day)::date;
+    name     text := 'messages_p' || to_char(from_day, 'YYYYMM');
+begin
+    if to_regclass(name) is null then
+        execute format('create table %I partition of messages for values from (%L) to (%L)',
+                       name, from_day, (from_day + interval '1 month')::date);
+    end if;
+    return name;
+end;
+$$;
+
+alter table messages rename to messages_unpartitioned;
+alter index messages_pkey rename to messages_unpartitioned_pkey;
+
+-- O seq deixa de ser identity (a sequência era da tabela antiga) e continua de onde parou
+create sequence message_seq;
+select setval('message_seq', coalesce((select max(seq) from messages_unpartitioned), 0) + 1, false);
+
+-- A chave primária precisa conter a coluna de partição; o id (UUID aleatório gerado no servidor)
+-- continua sendo o identificador da mensagem
+create table messages (
+    id                uuid         not null,
+    conversation_key  uuid         not null,
+    sender_id         uuid         not null references users (id),
+    receiver_id       uuid         not null references users (id),
+    encrypted_aes_key bytea,
+    key_epoch_id      uuid         references key_epochs (id),
+    encrypted_message bytea        not null,
+    iv                bytea        not null,
+    timestamp         timestamp(6) not null,
+    seq               bigint       not null default nextval('message_seq'),
+    constraint messages_pkey primary key (id, timestamp),
+    constraint chk_messages_key check (encrypted_aes_key is not null or key_epoch_id is not null)
+) partition by range (timestamp);
+
+alter sequence message_seq owned by messages.seq;
+
+-- Partições para os dados existentes e para os próximos meses
+select ensure_message_partition(month::date)
+from generate_series(
+        date_trunc('month', least(coalesce((select min(timestamp) from messages_unpartitioned), localtimestamp), localtimestamp)),
+        date_trunc('month', localtimestamp) + interval '2 months',
+        interval '1 month') as month;
+
+insert into messages (id, conversation_key, sender_id, receiver_id, encrypted_aes_key, key_epoch_id,
+                      encrypted_message, iv, timestamp, seq)
+select id, conversation_key, sender_id, receiver_id, encrypted_aes_key, key_epoch_id,
+       encrypted_message, iv, timestamp, seq
+from messages_unpartitioned;
+
+drop table messages_unpartitioned;
+
+-- Mesmos índices de antes, criados em cada partição
+create index idx_messages_conversation on messages (conversation_key, timestamp, id);
+create index idx_messages_receiver on messages (receiver_id, timestamp);
+create index idx_messages_sender on messages (sender_id, timestamp);
+create index idx_messages_receiver_seq on messages (receiver_id, seq);
+create index idx_messages_sender_seq on messages (sender_id, seq);
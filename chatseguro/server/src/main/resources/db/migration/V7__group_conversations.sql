@@ -0,0 +1,40 @@
+-- Conversas em grupo. Uma mensagem de grupo é uma única linha em messages (ciphertext uma vez),
+-- com group_id no lugar de receiver_id e conversation_key = id do grupo, então o histórico usa
+-- as mesmas consultas paginadas (idx_messages_conversation).
+create table chat_groups (
+    id         uuid         not null primary key,
+    name       varchar(100) not null,
+    created_by uuid         not null references users (id),
+    created_at timestamp(6) not null
+);
+
+create table group_members (
+    group_id  uuid         not null references chat_groups (id) on delete cascade,
+    user_id   uuid         not null references users (id),
+    joined_at timestamp(6) not null,
+    primary key (group_id, user_id)
+);
+
+create index idx_group_members_user on group_members (user_id);
+
+alter table messages
+    alter column receiver_id drop not null,
+    add column group_id uuid references chat_groups (id),
+    add constraint chk_messages_target check ((receiver_id is null) <> (group_id is null));
+
+-- Época de grupo: a mesma chave AES embrulhada uma vez para cada membro (key_epoch_members);
+-- as mensagens referenciam só o id da época
+alter table key_epochs
+    alter column receiver_id drop not null,
+    alter column wrapped_key drop not null,
+    add column group_id uuid references chat_groups (id),
+    add constraint chk_key_epochs_target check (
+        (group_id is null and receiver_id is not null and wrapped_key is not null)
+        or (group_id is not null and receiver_id is null and wrapped_key is null));
+
+create table key_epoch_members (
+    epoch_id    uuid  not null references key_epochs (id) on delete cascade,
+    member_id   uuid  not null references users (id),
+    wrapped_key bytea not null,
+    primary key (epoch_id, member_id)
+);
@@ -0,0 +1,22 @@
+-- ensure_message_partition (V6) pode rodar ao mesmo tempo em vários nós na subida: os dois veem
+-- to_regclass nulo e o segundo CREATE falhava. Agora a criação tolera a corrida e quem perde
+-- só devolve o nome da partição que o outro criou.
+create or replace function ensure_message_partition(p_day date) returns text
+language plpgsql as $$
+declare
+    from_day date := date_trunc('month', p_day)::date;
+    name     text := 'messages_p' || to_char(from_day, 'YYYYMM');
+begin
+    if to_regclass(name) is null then
+        begin
+            execute format('create table if not exists %I partition of messages for values from (%L) to (%L)',
+                           name, from_day, (from_day + interval '1 month')::date);
+        exception
+            -- O CREATE concorrente que chega por último esbarra no catálogo (pg_type/pg_class)
+            when duplicate_table or unique_violation then
+                null;
+        end;
+    end if;
+    return name;
+end;
+$$;
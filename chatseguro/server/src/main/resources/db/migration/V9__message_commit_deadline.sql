@@ -0,0 +1,23 @@
+-- Prazo de commit das transações que gravam mensagens (MessageBatchWriter): o sync só lê linhas
+-- com timestamp mais velho que chat.sync.visibility-lag, o que só é seguro se nenhuma transação
+-- de escrita consegue commitar depois disso. O escritor define chat.commit_deadline na própria
+-- transação (antes de escolher o timestamp das linhas) e este trigger, adiado para o commit,
+-- aborta a transação se o prazo já passou. Sem a configuração (outros escritores) não há prazo.
+create function check_message_commit_deadline() returns trigger
+language plpgsql as $$
+declare
+    deadline text := current_setting('chat.commit_deadline', true);
+begin
+    if deadline is not null and deadline <> ''
+            and clock_timestamp() - transaction_timestamp() > deadline::interval then
+        raise exception 'Message transaction exceeded its commit deadline of %', deadline
+            using errcode = 'query_canceled';
+    end if;
+    return null;
+end;
+$$;
+
+create constraint trigger messages_commit_deadline
+    after insert on messages
+    deferrable initially deferred
+    for each row execute function check_message_commit_deadline();
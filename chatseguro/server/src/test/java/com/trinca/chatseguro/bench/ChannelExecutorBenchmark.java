@@ -0,0 +1,65 @@
+package com.trinca.chatseguro.bench;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+// Compara o pool padrão dos canais STOMP (2 x CPUs, fila sem limite) com virtual threads
+// quando cada frame bloqueia no banco. Não roda no build normal:
+//   mvn test -Dtest=ChannelExecutorBenchmark -Dbenchmark=true [-Dbench.frames=20000 -Dbench.blockMillis=5]
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ChannelExecutorBenchmark {
+
+	private static final int FRAMES = Integer.getInteger("bench.frames", 20_000);
+	private static final int BLOCK_MILLIS = Integer.getInteger("bench.blockMillis", 5);
+
+	@Test
+	void compareChannelExecutors() throws Exception {
+		ThreadPoolTaskExecutor platformPool = new ThreadPoolTaskExecutor();
+		platformPool.setCorePoolSize(Runtime.getRuntime().availableProcessors() * 2);
+		platformPool.setThreadNamePrefix("bench-inbound-");
+		platformPool.initialize();
+
+		try {
+			run("platform pool (default)", platformPool);
+			run("virtual threads", new VirtualThreadTaskExecutor("bench-virtual-"));
+		} finally {
+			platformPool.shutdown();
+		}
+	}
+
+	private void run(String name, Executor executor) throws InterruptedException {
+		long[] latencies = new long[FRAMES];
+		CountDownLatch done = new CountDownLatch(FRAMES);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < FRAMES; i++) {
+			final int index = i;
+			final long submitted = System.nanoTime();
+			executor.execute(() -> {
+				try {
+					Thread.sleep(BLOCK_MILLIS); // simula o handler bloqueado no JDBC
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				latencies[index] = System.nanoTime() - submitted;
+				done.countDown();
+			});
+		}
+		done.await(10, TimeUnit.MINUTES);
+		long elapsed = System.nanoTime() - start;
+
+		Arrays.sort(latencies);
+		System.out.printf("%-24s frames=%d throughput=%.0f frames/s p50=%.1f ms p99=%.1f ms%n",
+				name, FRAMES,
+				FRAMES / (elapsed / 1e9),
+				latencies[FRAMES / 2] / 1e6,
+				latencies[(int) (FRAMES * 0.99)] / 1e6);
+	}
+}
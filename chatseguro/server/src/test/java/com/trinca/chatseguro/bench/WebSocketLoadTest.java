@@ -0,0 +1,283 @@
+package com.trinca.chatseguro.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.trinca.chatseguro.dto.MessageDto;
+import com.trinca.chatseguro.dto.SendMessageDto;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.io.File;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Carga ponta a ponta: sobe a aplicação (banco do application.properties ou -Dspring.datasource.url),
+// registra N usuários pelo REST, conecta todos por STOMP em /ws e envia em taxa fixa (malha aberta)
+// por /app/chat.sendMessage. A latência vai do instante *planejado* do envio até o frame chegar em
+// /topic/messages/{destinatário}, então atrasos do próprio gerador também contam. Não roda no build normal:
+//   mvn test -Dtest=WebSocketLoadTest -Dbenchmark=true [-Dload.users=50 -Dload.rate=500 -Dload.seconds=30 -Dload.bytes=256]
+// Resumo no console e em target/load-test.json.
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		// Todos os registros/logins saem do mesmo IP
+		"security.login-limit.capacity=1000000",
+		"spring.jpa.show-sql=false"
+})
+class WebSocketLoadTest {
+
+	private static final int USERS = Integer.getInteger("load.users", 50);
+	private static final int RATE = Integer.getInteger("load.rate", 500);
+	private static final int SECONDS = Integer.getInteger("load.seconds", 30);
+	private static final int BYTES = Math.max(Long.BYTES, Integer.getInteger("load.bytes", 256));
+	private static final int DRAIN_SECONDS = Integer.getInteger("load.drainSeconds", 10);
+
+	@LocalServerPort
+	private int port;
+
+	// A aplicação roda nesta JVM: o relatório inclui as métricas do servidor por etapa
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	private final Latencies latencies = new Latencies();
+	private final AtomicLong delivered = new AtomicLong();
+	private final AtomicLong sendErrors = new AtomicLong();
+	private final AtomicLong stompErrors = new AtomicLong();
+	private volatile String firstError;
+
+	@Test
+	void sendAndDeliverUnderLoad() throws Exception {
+		assertTrue(USERS >= 2, "load.users must be at least 2");
+		String prefix = "load-" + UUID.randomUUID().toString().substring(0, 8) + "-";
+		List<String> users = new ArrayList<>();
+		for (int i = 0; i < USERS; i++) {
+			users.add(prefix + i);
+		}
+		Map<String, String> tokens = registerAll(users);
+
+		WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+		// Mesmo Jackson do servidor (LocalDateTime no MessageDto)
+		MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+		converter.setObjectMapper(Jackson2ObjectMapperBuilder.json().build());
+		client.setMessageConverter(converter);
+		client.setInboundMessageSizeLimit(Math.max(64 * 1024, BYTES * 4));
+
+		Map<String, StompSession> sessions = new LinkedHashMap<>();
+		for (String user : users) {
+			StompSession session = connect(client, tokens.get(user)).get(10, TimeUnit.SECONDS);
+			session.subscribe("/topic/messages/" + user, new StompSessionHandlerAdapter() {
+				@Override
+				public Type getPayloadType(StompHeaders headers) {
+					return MessageDto.class;
+				}
+
+				@Override
+				public void handleFrame(StompHeaders headers, Object payload) {
+					long sentAt = ByteBuffer.wrap(((MessageDto) payload).encryptedMessage).getLong();
+					latencies.add(System.nanoTime() - sentAt);
+					delivered.incrementAndGet();
+				}
+			});
+			sessions.put(user, session);
+		}
+		// SUBSCRIBE é assíncrono; dá tempo para o PresenceRegistry registrar todos
+		Thread.sleep(1000);
+
+		long total = (long) RATE * SECONDS;
+		long interval = TimeUnit.SECONDS.toNanos(1) / RATE;
+		Random random = new Random(42);
+		byte[] aesKey = new byte[256];
+		byte[] iv = new byte[16];
+		random.nextBytes(aesKey);
+		random.nextBytes(iv);
+
+		long start = System.nanoTime();
+		for (long i = 0; i < total; i++) {
+			long planned = start + i * interval;
+			long wait = planned - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+			}
+
+			String sender = users.get((int) (i % USERS));
+			String receiver = users.get((int) ((i + 1 + random.nextInt(USERS - 1)) % USERS));
+			byte[] body = new byte[BYTES];
+			ByteBuffer.wrap(body).putLong(planned);
+
+			SendMessageDto message = new SendMessageDto();
+			message.setReceiver(receiver);
+			message.setEncryptedAesKey(aesKey);
+			message.setEncryptedMessage(body);
+			message.setIv(iv);
+			try {
+				sessions.get(sender).send("/app/chat.sendMessage", message);
+			} catch (RuntimeException e) {
+				sendErrors.incrementAndGet();
+			}
+		}
+		long sendElapsed = System.nanoTime() - start;
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_SECONDS);
+		while (delivered.get() + sendErrors.get() < total && System.nanoTime() < deadline) {
+			Thread.sleep(50);
+		}
+		long elapsed = System.nanoTime() - start;
+		sessions.values().forEach(StompSession::disconnect);
+		client.stop();
+
+		Map<String, Object> report = report(total, sendElapsed, elapsed);
+		ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+		System.out.println(mapper.writeValueAsString(report));
+		mapper.writeValue(new File("target/load-test.json"), report);
+
+		assertTrue(delivered.get() > 0, "No message was delivered");
+	}
+
+	private Map<String, String> registerAll(List<String> users) throws Exception {
+		RestClient rest = RestClient.create("http://localhost:" + port);
+		// O BCrypt roda num pool limitado (security.hash.*); poucas requisições em paralelo evitam 503
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			Map<String, Future<String>> pending = new LinkedHashMap<>();
+			for (String user : users) {
+				pending.put(user, pool.submit(() -> {
+					rest.post().uri("/api/auth/register").contentType(MediaType.APPLICATION_JSON)
+							.body(Map.of("username", user, "email", user + "@load.test",
+									"password", "secret", "publicKey", "pk"))
+							.retrieve().toBodilessEntity();
+					Map<?, ?> login = rest.post().uri("/api/auth/login").contentType(MediaType.APPLICATION_JSON)
+							.body(Map.of("username", user, "password", "secret"))
+							.retrieve().body(Map.class);
+					return (String) login.get("token");
+				}));
+			}
+			Map<String, String> tokens = new HashMap<>();
+			for (Map.Entry<String, Future<String>> entry : pending.entrySet()) {
+				tokens.put(entry.getKey(), entry.getValue().get(60, TimeUnit.SECONDS));
+			}
+			return tokens;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private CompletableFuture<StompSession> connect(WebSocketStompClient client, String token) {
+		StompHeaders headers = new StompHeaders();
+		headers.add("Authorization", "Bearer " + token);
+		return client.connectAsync("ws://localhost:" + port + "/ws/websocket", new WebSocketHttpHeaders(),
+				headers, new StompSessionHandlerAdapter() {
+					@Override
+					public void handleFrame(StompHeaders frameHeaders, Object payload) {
+						error("ERROR frame: " + frameHeaders.getFirst("message"));
+					}
+
+					@Override
+					public void handleException(StompSession session, StompCommand command, StompHeaders headers,
+												byte[] payload, Throwable exception) {
+						error(exception.toString());
+					}
+
+					@Override
+					public void handleTransportError(StompSession session, Throwable exception) {
+						error(exception.toString());
+					}
+				});
+	}
+
+	private void error(String description) {
+		if (stompErrors.getAndIncrement() == 0) {
+			firstError = description;
+		}
+	}
+
+	private Map<String, Object> report(long total, long sendElapsed, long elapsed) {
+		long[] sorted = latencies.sorted();
+		Map<String, Object> latency = new LinkedHashMap<>();
+		for (double p : new double[]{50, 90, 99, 99.9}) {
+			latency.put("p" + p, millis(percentile(sorted, p)));
+		}
+		latency.put("max", millis(sorted.length > 0 ? sorted[sorted.length - 1] : 0));
+
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("users", USERS);
+		report.put("targetRate", RATE);
+		report.put("seconds", SECONDS);
+		report.put("messageBytes", BYTES);
+		report.put("sent", total - sendErrors.get());
+		report.put("delivered", delivered.get());
+		report.put("lost", total - sendErrors.get() - delivered.get());
+		report.put("sendErrors", sendErrors.get());
+		report.put("stompErrors", stompErrors.get());
+		report.put("firstError", firstError);
+		report.put("achievedSendRate", Math.round(total / (sendElapsed / 1e9)));
+		report.put("deliveredPerSecond", Math.round(delivered.get() / (elapsed / 1e9)));
+		report.put("latencyMillis", latency);
+
+		Map<String, Object> server = new LinkedHashMap<>();
+		for (String stage : new String[]{"resolve", "insert", "deliver"}) {
+			server.put("send." + stage + ".meanMillis", meanMillis(meterRegistry.find("chat.send").tag("stage", stage).timer()));
+		}
+		server.put("writer.flush.meanMillis", meanMillis(meterRegistry.find("chat.writer.flush").timer()));
+		DistributionSummary batches = meterRegistry.find("chat.writer.batch.size").summary();
+		server.put("writer.batch.meanSize", batches != null ? Math.round(batches.mean() * 10) / 10.0 : null);
+		report.put("server", server);
+		return report;
+	}
+
+	private static Double meanMillis(Timer timer) {
+		return timer != null ? Math.round(timer.mean(TimeUnit.MICROSECONDS)) / 1_000.0 : null;
+	}
+
+	private static long percentile(long[] sorted, double p) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(p / 100 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+	}
+
+	private static double millis(long nanos) {
+		return Math.round(nanos / 1_000.0) / 1_000.0;
+	}
+
+	// Latências em nanos; os frames chegam em várias threads do cliente
+	private static final class Latencies {
+		private long[] values = new long[1024];
+		private int size;
+
+		synchronized void add(long value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		synchronized long[] sorted() {
+			long[] copy = Arrays.copyOf(values, size);
+			Arrays.sort(copy);
+			return copy;
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package com.trinca.chatseguro.config;
+
+import com.trinca.chatseguro.dto.MessageDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PayloadCodecTests {
+
+	private final PayloadCodec codec = new PayloadCodec(
+			Jackson2ObjectMapperBuilder.json().build(), Jackson2ObjectMapperBuilder.json());
+
+	@Test
+	void cborTranscodesToTheSameJson() {
+		MessageDto dto = new MessageDto();
+		dto.id = UUID.randomUUID();
+		dto.senderUsername = "alice";
+		dto.receiverUsername = "bob";
+		dto.encryptedAesKey = new byte[256];
+		dto.encryptedMessage = new byte[1024];
+		dto.iv = new byte[12];
+		dto.timestamp = LocalDateTime.now();
+
+		byte[] json = codec.toJson(dto);
+		byte[] cbor = codec.toCbor(dto);
+
+		assertEquals(new String(json, StandardCharsets.UTF_8),
+				new String(codec.cborToJson(cbor), StandardCharsets.UTF_8));
+		// Binário puro em vez de base64
+		assertTrue(cbor.length < json.length * 0.8, "cbor=" + cbor.length + " json=" + json.length);
+	}
+
+	@Test
+	void preparedPayloadIsSerializedOncePerFormat() {
+		MessageDto dto = new MessageDto();
+		dto.id = UUID.randomUUID();
+		PreparedPayload payload = codec.prepare(dto);
+
+		assertSame(payload.json(), payload.json());
+		assertSame(payload.cbor(), payload.cbor());
+		assertArrayEquals(codec.toJson(dto), payload.json());
+	}
+}
@@ -0,0 +1,114 @@
+package com.trinca.chatseguro.config;
+
+import com.trinca.chatseguro.service.JwtService;
+import com.trinca.chatseguro.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class StompAuthInterceptorTests {
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private JwtService jwtService;
+
+	@Test
+	void connectFrameCarriesTheToken() throws Exception {
+		String alice = "alice-" + UUID.randomUUID();
+		userService.register(alice, alice + "@test", "secret", "pk");
+
+		CompletableFuture<StompHeaders> error = new CompletableFuture<>();
+		StompSession session = connect("Bearer " + jwtService.generateToken(alice), error)
+				.get(5, TimeUnit.SECONDS);
+		assertTrue(session.isConnected());
+
+		// O principal do CONNECT chega ao @MessageMapping: o eco volta em /topic/sent/<alice>
+		CompletableFuture<Map<?, ?>> echo = new CompletableFuture<>();
+		session.subscribe("/topic/sent/" + alice, new StompSessionHandlerAdapter() {
+			@Override
+			public Type getPayloadType(StompHeaders headers) {
+				return Map.class;
+			}
+
+			@Override
+			public void handleFrame(StompHeaders frameHeaders, Object payload) {
+				echo.complete((Map<?, ?>) payload);
+			}
+		});
+		session.send("/app/chat.sendMessage", Map.of(
+				"receiver", alice, "encryptedAesKey", "AQ==", "encryptedMessage", "Ag==", "iv", "BA=="));
+		assertEquals(alice, echo.get(5, TimeUnit.SECONDS).get("senderUsername"));
+		session.disconnect();
+
+		// Sem token o handshake passa (não há filtro em /ws), mas o CONNECT recebe ERROR
+		for (String authorization : new String[]{null, "Bearer invalid"}) {
+			CompletableFuture<StompHeaders> rejected = new CompletableFuture<>();
+			CompletableFuture<StompSession> attempt = connect(authorization, rejected);
+			assertNotNull(rejected.get(5, TimeUnit.SECONDS).getFirst("message"));
+			assertFalse(attempt.isDone() && !attempt.isCompletedExceptionally());
+		}
+	}
+
+	@Test
+	void subscribeIsLimitedToOwnTopics() throws Exception {
+		String alice = "alice-" + UUID.randomUUID();
+		userService.register(alice, alice + "@test", "secret", "pk");
+
+		assertTrue(StompAuthInterceptor.ownsDestination(() -> alice, "/topic/presence/" + alice));
+		assertTrue(StompAuthInterceptor.ownsDestination(() -> alice, "/topic/cbor/messages/" + alice));
+		assertFalse(StompAuthInterceptor.ownsDestination(() -> alice, "/topic/messages/bob"));
+		assertFalse(StompAuthInterceptor.ownsDestination(() -> alice, "/topic/" + alice));
+		assertFalse(StompAuthInterceptor.ownsDestination(() -> alice, "/queue/messages/" + alice));
+
+		CompletableFuture<StompHeaders> error = new CompletableFuture<>();
+		StompSession session = connect("Bearer " + jwtService.generateToken(alice), error)
+				.get(5, TimeUnit.SECONDS);
+		session.subscribe("/topic/receipts/bob", new StompSessionHandlerAdapter() {
+		});
+		assertEquals("Forbidden destination", error.get(5, TimeUnit.SECONDS).getFirst("message"));
+	}
+
+	private CompletableFuture<StompSession> connect(String authorization, CompletableFuture<StompHeaders> error) {
+		WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+		client.setMessageConverter(new CompositeMessageConverter(
+				List.of(new StringMessageConverter(), new MappingJackson2MessageConverter())));
+
+		StompHeaders headers = new StompHeaders();
+		if (authorization != null) {
+			headers.add("Authorization", authorization);
+		}
+		// Transporte WebSocket puro do endpoint SockJS
+		return client.connectAsync("ws://localhost:" + port + "/ws/websocket", new WebSocketHttpHeaders(),
+				headers, new StompSessionHandlerAdapter() {
+					@Override
+					public void handleFrame(StompHeaders frameHeaders, Object payload) {
+						error.complete(frameHeaders);
+					}
+				});
+	}
+}
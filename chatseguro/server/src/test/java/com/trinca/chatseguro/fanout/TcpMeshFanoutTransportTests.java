@@ -0,0 +1,152 @@
+package com.trinca.chatseguro.fanout;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TcpMeshFanoutTransportTests {
+
+	private static final String SECRET = "segredo-do-cluster-de-teste";
+
+	private final ObjectMapper objectMapper = new CBORMapper();
+
+	private TcpMeshFanoutTransport nodeA;
+	private TcpMeshFanoutTransport nodeB;
+
+	@AfterEach
+	void stopNodes() {
+		if (nodeA != null) nodeA.stop();
+		if (nodeB != null) nodeB.stop();
+	}
+
+	@Test
+	void framesReachThePeerNode() throws Exception {
+		RecordingListener listenerB = new RecordingListener();
+		nodeB = transport(SECRET, List.of());
+		nodeB.start("node-b", listenerB);
+
+		RecordingListener listenerA = new RecordingListener();
+		nodeA = transport(SECRET, List.of("localhost:" + nodeB.getLocalPort()));
+		nodeA.start("node-a", listenerA);
+
+		assertTrue(listenerA.connected.await(5, TimeUnit.SECONDS));
+
+		nodeA.broadcast(FanoutFrame.route("node-a", "alice", true));
+		nodeA.send("node-b", FanoutFrame.deliver("node-a", "bob", "/topic/messages/bob", new byte[]{1, 2, 3}));
+
+		FanoutFrame route = listenerB.frames.poll(5, TimeUnit.SECONDS);
+		FanoutFrame deliver = listenerB.frames.poll(5, TimeUnit.SECONDS);
+		assertEquals(FanoutFrame.Type.ROUTE_UP, route.type());
+		assertEquals("alice", route.user());
+		assertEquals(FanoutFrame.Type.DELIVER, deliver.type());
+		assertArrayEquals(new byte[]{1, 2, 3}, deliver.payload());
+
+		nodeA.stop();
+		assertTrue(listenerB.disconnected.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void peerWithWrongSecretIsRejected() throws Exception {
+		RecordingListener listenerB = new RecordingListener();
+		nodeB = transport(SECRET, List.of());
+		nodeB.start("node-b", listenerB);
+
+		RecordingListener listenerA = new RecordingListener();
+		nodeA = transport("outro-segredo-qualquer-123", List.of("localhost:" + nodeB.getLocalPort()));
+		nodeA.start("node-a", listenerA);
+
+		assertFalse(listenerA.connected.await(1, TimeUnit.SECONDS));
+		nodeA.broadcast(FanoutFrame.route("node-a", "alice", true));
+		assertNull(listenerB.frames.poll(200, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	void framesClaimingAnotherNodeAreDropped() throws Exception {
+		RecordingListener listenerB = new RecordingListener();
+		nodeB = transport(SECRET, List.of());
+		nodeB.start("node-b", listenerB);
+
+		RecordingListener listenerA = new RecordingListener();
+		nodeA = transport(SECRET, List.of("localhost:" + nodeB.getLocalPort()));
+		nodeA.start("node-a", listenerA);
+		assertTrue(listenerA.connected.await(5, TimeUnit.SECONDS));
+
+		nodeA.broadcast(FanoutFrame.route("node-c", "mallory", true));
+		nodeA.broadcast(FanoutFrame.route("node-a", "alice", true));
+		FanoutFrame route = listenerB.frames.poll(5, TimeUnit.SECONDS);
+		assertEquals("node-a", route.node());
+		assertEquals("alice", route.user());
+		assertNull(listenerB.frames.poll(200, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	void replacedConnectionDoesNotDisconnectThePeer() throws Exception {
+		RecordingListener listenerB = new RecordingListener();
+		nodeB = transport(SECRET, List.of());
+		nodeB.start("node-b", listenerB);
+
+		// Sem reconexão automática: cada lado conecta uma única vez
+		RecordingListener first = new RecordingListener();
+		nodeA = transport(SECRET, List.of("localhost:" + nodeB.getLocalPort()), Duration.ofHours(1));
+		nodeA.start("node-a", first);
+		assertTrue(first.connected.await(5, TimeUnit.SECONDS));
+
+		RecordingListener second = new RecordingListener();
+		TcpMeshFanoutTransport restarted = transport(SECRET, List.of("localhost:" + nodeB.getLocalPort()), Duration.ofHours(1));
+		try {
+			restarted.start("node-a", second);
+			assertTrue(second.connected.await(5, TimeUnit.SECONDS));
+
+			// A conexão antiga cai depois da nova (o processo velho termina), mas as rotas de
+			// node-a continuam valendo
+			nodeA.stop();
+			nodeA = null;
+			assertFalse(listenerB.disconnected.await(300, TimeUnit.MILLISECONDS));
+			restarted.broadcast(FanoutFrame.route("node-a", "alice", true));
+			assertEquals("alice", listenerB.frames.poll(5, TimeUnit.SECONDS).user());
+		} finally {
+			restarted.stop();
+		}
+		assertTrue(listenerB.disconnected.await(5, TimeUnit.SECONDS));
+	}
+
+	private TcpMeshFanoutTransport transport(String secret, List<String> peers) {
+		return transport(secret, peers, Duration.ofMillis(100));
+	}
+
+	private TcpMeshFanoutTransport transport(String secret, List<String> peers, Duration reconnectInterval) {
+		return new TcpMeshFanoutTransport(objectMapper, "127.0.0.1", 0, peers, reconnectInterval, secret, 100);
+	}
+
+	private static class RecordingListener implements FanoutTransport.Listener {
+
+		final BlockingQueue<FanoutFrame> frames = new LinkedBlockingQueue<>();
+		final CountDownLatch connected = new CountDownLatch(1);
+		final CountDownLatch disconnected = new CountDownLatch(1);
+
+		@Override
+		public void onFrame(FanoutFrame frame) {
+			frames.add(frame);
+		}
+
+		@Override
+		public void onPeerConnected(String node) {
+			connected.countDown();
+		}
+
+		@Override
+		public void onPeerDisconnected(String node) {
+			disconnected.countDown();
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package com.trinca.chatseguro.presence;
+
+import com.trinca.chatseguro.fanout.MessageFanout;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ActivitySignalsTests {
+
+	@Test
+	void repeatedSignalsAreCoalescedAndOfflineReceiversDropped() {
+		PresenceService presence = mock(PresenceService.class);
+		MessageFanout fanout = mock(MessageFanout.class);
+		when(presence.isOnline("bob")).thenReturn(true);
+		AtomicLong clock = new AtomicLong(1_000);
+		ActivitySignals signals = new ActivitySignals(presence, fanout, Duration.ofMillis(500), clock::get);
+
+		for (int i = 0; i < 10; i++) {
+			signals.signal("alice", "bob", "typing");
+		}
+		signals.signal("alice", "bob", "idle");
+		signals.signal("alice", "carol", "typing");
+		verify(fanout, times(1)).deliver(eq("bob"), eq("/topic/activity/bob"), eq((Object) Map.of("sender", "alice", "kind", "typing")));
+
+		// Ainda dentro da janela: nada sai
+		clock.addAndGet(Duration.ofMillis(499).toNanos());
+		signals.sweep();
+		verify(fanout, times(1)).deliver(anyString(), anyString(), any(Object.class));
+
+		// Só o último estado pendente sai no fim da janela
+		clock.addAndGet(Duration.ofMillis(1).toNanos());
+		signals.sweep();
+		verify(fanout, times(1)).deliver(eq("bob"), eq("/topic/activity/bob"), eq((Object) Map.of("sender", "alice", "kind", "idle")));
+		verify(fanout, times(2)).deliver(anyString(), anyString(), any(Object.class));
+	}
+}
@@ -0,0 +1,46 @@
+package com.trinca.chatseguro.presence;
+
+import com.trinca.chatseguro.event.PresenceChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PresenceRegistryTests {
+
+	@Test
+	void firstAndLastSessionPublishTransitions() {
+		List<Object> events = new ArrayList<>();
+		PresenceRegistry registry = new PresenceRegistry(events::add);
+
+		// SUBSCRIBE sem sessão registrada é ignorado
+		registry.subscribe("bob", "s1", "sub-0", "/topic/messages/bob");
+		assertFalse(registry.isOnline("bob"));
+		assertTrue(events.isEmpty());
+
+		registry.connect("bob", "s1");
+		registry.subscribe("bob", "s1", "sub-0", "/topic/messages/bob");
+		registry.connect("bob", "s2");
+		assertEquals(List.of(new PresenceChangedEvent("bob", true, true)), events);
+		assertTrue(registry.isSubscribed("bob", "/topic/messages/bob"));
+		assertFalse(registry.isSubscribed("alice", "/topic/messages/bob"));
+
+		registry.unsubscribe("bob", "s1", "sub-0");
+		assertFalse(registry.isSubscribed("bob", "/topic/messages/bob"));
+
+		registry.disconnect("bob", "s1");
+		registry.disconnect("bob", "s1");
+		assertTrue(registry.isOnline("bob"));
+		registry.disconnect("bob", "s2");
+		assertFalse(registry.isOnline("bob"));
+		assertEquals(new PresenceChangedEvent("bob", false, true), events.get(events.size() - 1));
+		assertEquals(2, events.size());
+
+		// SUBSCRIBE atrasado, processado depois do DISCONNECT, não ressuscita a sessão
+		registry.subscribe("bob", "s2", "sub-1", "/topic/presence/bob");
+		assertFalse(registry.isOnline("bob"));
+		assertEquals(2, events.size());
+	}
+}
@@ -0,0 +1,325 @@
+package com.trinca.chatseguro.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.trinca.chatseguro.dto.ConversationPageDto;
+import com.trinca.chatseguro.dto.MessageDto;
+import com.trinca.chatseguro.dto.SyncBatchDto;
+import com.trinca.chatseguro.exception.BadRequestException;
+import com.trinca.chatseguro.model.ChatGroup;
+import com.trinca.chatseguro.model.KeyEpoch;
+import com.trinca.chatseguro.model.Message;
+import com.trinca.chatseguro.model.User;
+import com.trinca.chatseguro.repository.MessageRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+		"spring.jpa.properties.hibernate.generate_statistics=true",
+		"chat.sync.visibility-lag=600ms",
+		"chat.writer.commit-deadline=500ms"
+})
+class ChatServiceTests {
+
+	@Autowired
+	private ChatService chatService;
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private UserDirectory userDirectory;
+
+	@Autowired
+	private MessageService messageService;
+
+	@Autowired
+	private SyncService syncService;
+
+	@Autowired
+	private MessageRepository messageRepository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private MessageBatchWriter messageBatchWriter;
+
+	@Autowired
+	private GroupService groupService;
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Test
+	void sendingWithWarmDirectoryDoesNotLoadUsers() throws Exception {
+		String alice = "alice-" + UUID.randomUUID();
+		String bob   = "bob-" + UUID.randomUUID();
+		userService.register(alice, alice + "@test", "secret", "pk");
+		userService.register(bob, bob + "@test", "secret", "pk");
+		userDirectory.resolve(alice);
+		userDirectory.resolve(bob);
+
+		Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		stats.clear();
+		long inserts = meterRegistry.get("chat.send").tag("stage", "insert").timer().count();
+
+		Message saved = chatService.sendMessage(alice, bob, new byte[]{1}, new byte[]{2, 3}, new byte[]{4});
+		assertEquals(inserts + 1, meterRegistry.get("chat.send").tag("stage", "insert").timer().count());
+
+		// O INSERT vai pelo batch JDBC do MessageBatchWriter; nenhum SELECT passa pelo Hibernate
+		assertNotNull(saved.getId());
+		assertEquals(bob, saved.getReceiver().getUsername());
+		assertEquals(0, stats.getPrepareStatementCount());
+
+		Message stored = messageRepository.findById(saved.getId()).orElseThrow();
+		assertEquals(saved.getConversationKey(), stored.getConversationKey());
+	}
+
+	@Test
+	void epochKeyIsReturnedOncePerHistoryPage() throws Exception {
+		String alice = "alice-" + UUID.randomUUID();
+		String bob   = "bob-" + UUID.randomUUID();
+		userService.register(alice, alice + "@test", "secret", "pk");
+		userService.register(bob, bob + "@test", "secret", "pk");
+
+		KeyEpoch epoch = chatService.startKeyEpoch(alice, bob, new byte[]{9, 9, 9});
+		for (int i = 0; i < 3; i++) {
+			chatService.sendMessage(alice, bob, null, epoch.getId(), new byte[]{(byte) i}, new byte[]{4});
+		}
+
+		ConversationPageDto page = messageService.getConversationPage(
+				userDirectory.resolve(bob), userDirectory.resolve(alice), null, 50);
+
+		assertEquals(3, page.messages.size());
+		assertTrue(page.messages.stream().allMatch(m -> m.encryptedAesKey == null && epoch.getId().equals(m.keyEpochId)));
+		assertEquals(1, page.keyEpochs.size());
+		assertArrayEquals(new byte[]{9, 9, 9}, page.keyEpochs.get(epoch.getId()));
+	}
+
+	@Test
+	void syncResumesFromTheDeviceAck() throws Exception {
+		String alice = "alice-" + UUID.randomUUID();
+		String bob   = "bob-" + UUID.randomUUID();
+		userService.register(alice, alice + "@test", "secret", "pk");
+		userService.register(bob, bob + "@test", "secret", "pk");
+		for (int i = 0; i < 5; i++) {
+			chatService.sendMessage(alice, bob, new byte[]{1}, new byte[]{(byte) i}, new byte[]{4});
+		}
+
+		awaitVisible();
+		SyncBatchDto first = syncService.sync(bob, "phone", null, 3);
+		assertEquals(3, first.messages.size());
+		assertTrue(first.hasMore);
+		syncService.ack(bob, "phone", first.nextAfter);
+
+		SyncBatchDto rest = syncService.sync(bob, "phone", null, 3);
+		assertEquals(2, rest.messages.size());
+		assertFalse(rest.hasMore);
+		assertTrue(rest.messages.get(0).seq > first.nextAfter);
+
+		// Outro dispositivo começa do zero
+		assertEquals(5, syncService.sync(bob, "laptop", null, 10).messages.size());
+
+		// Ack além do que já está visível é limitado: a próxima mensagem não é pulada
+		syncService.ack(bob, "tablet", Long.MAX_VALUE);
+		assertTrue(syncService.sync(bob, "tablet", null, 10).messages.isEmpty());
+		chatService.sendMessage(alice, bob, new byte[]{1}, new byte[]{5}, new byte[]{4});
+		awaitVisible();
+		assertEquals(1, syncService.sync(bob, "tablet", null, 10).messages.size());
+	}
+
+	@Test
+	void historyAndMailboxUseOneStatementForAnyPageSize() throws Exception {
+		String alice = "alice-" + UUID.randomUUID();
+		String bob   = "bob-" + UUID.randomUUID();
+		userService.register(alice, alice + "@test", "secret", "pk");
+		userService.register(bob, bob + "@test", "secret", "pk");
+		for (int i = 0; i < 30; i++) {
+			chatService.sendMessage(i % 2 == 0 ? alice : bob, i % 2 == 0 ? bob : alice,
+					new byte[]{1}, new byte[]{(byte) i}, new byte[]{4});
+		}
+		User me = userDirectory.resolve(bob);
+		User other = userDirectory.resolve(alice);
+		awaitVisible();
+		assertThrows(BadRequestException.class, () -> messageService.getConversationPage(me, other, "not-a-cursor", 10));
+
+		Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		for (int size : new int[]{1, 10, 30}) {
+			stats.clear();
+			ConversationPageDto page = messageService.getConversationPage(me, other, null, size);
+			assertEquals(size, page.messages.size());
+			assertTrue(page.messages.stream().allMatch(m -> m.senderUsername != null && m.receiverUsername != null));
+			assertEquals(1, stats.getPrepareStatementCount(), "history, size " + size);
+			assertEquals(0, stats.getEntityLoadCount());
+
+			stats.clear();
+			SyncBatchDto batch = syncService.sync(bob, "stmt", 0L, size);
+			assertEquals(size, batch.messages.size());
+			assertEquals(1, stats.getPrepareStatementCount(), "mailbox, size " + size);
+			assertEquals(0, stats.getEntityLoadCount());
+		}
+	}
+
+	@Test
+	void exportWritesOneLinePerMessageAndResumes() throws Exception {
+		String alice = "alice-" + UUID.randomUUID();
+		String bob   = "bob-" + UUID.randomUUID();
+		userService.register(alice, alice + "@test", "secret", "pk");
+		userService.register(bob, bob + "@test", "secret", "pk");
+		for (int i = 0; i < 4; i++) {
+			chatService.sendMessage(i % 2 == 0 ? alice : bob, i % 2 == 0 ? bob : alice,
+					new byte[]{1}, new byte[]{(byte) i}, new byte[]{4});
+		}
+
+		awaitVisible();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		syncService.export(bob, 0).writeTo(out);
+		String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+		assertEquals(4, lines.length);
+
+		MessageDto second = objectMapper.readValue(lines[1], MessageDto.class);
+		out.reset();
+		syncService.export(bob, second.seq).writeTo(out);
+		assertEquals(2, out.toString(StandardCharsets.UTF_8).split("\n").length);
+	}
+
+	@Test
+	void groupConversationsAreInTheMailboxExportAndInbox() throws Exception {
+		String alice = "alice-" + UUID.randomUUID();
+		String bob   = "bob-" + UUID.randomUUID();
+		userService.register(alice, alice + "@test", "secret", "pk");
+		userService.register(bob, bob + "@test", "secret", "pk");
+		ChatGroup group = groupService.create(alice, "trinca", List.of(bob));
+		KeyEpoch epoch = groupService.startKeyEpoch(group.getId(), alice,
+				Map.of(alice, new byte[]{1}, bob, new byte[]{2}));
+		groupService.send(group.getId(), alice, epoch.getId(), new byte[]{1}, new byte[]{9});
+		chatService.sendMessage(alice, bob, new byte[]{1}, new byte[]{2}, new byte[]{4});
+		groupService.send(group.getId(), bob, epoch.getId(), new byte[]{3}, new byte[]{9});
+		awaitVisible();
+
+		SyncBatchDto batch = syncService.sync(bob, "phone", 0L, 10);
+		assertEquals(3, batch.messages.size());
+		assertEquals(group.getId(), batch.messages.get(0).groupId);
+		assertNull(batch.messages.get(0).receiverUsername);
+		assertEquals(bob, batch.messages.get(1).receiverUsername);
+		assertEquals(bob, batch.messages.get(2).senderUsername);
+		// A chave da época de grupo vem embrulhada para quem sincroniza
+		assertArrayEquals(new byte[]{2}, batch.keyEpochs.get(epoch.getId()));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		syncService.export(bob, 0).writeTo(out);
+		assertEquals(3, out.toString(StandardCharsets.UTF_8).split("\n").length);
+
+		// Caixa de entrada: as do grupo enviadas por outros, não as próprias
+		assertEquals(2, chatService.getMessagesForUser(bob).size());
+	}
+
+	@Test
+	void bulkDeleteRemovesOnlyOwnMessagesInOneStatement() throws Exception {
+		String alice = "alice-" + UUID.randomUUID();
+		String bob   = "bob-" + UUID.randomUUID();
+		userService.register(alice, alice + "@test", "secret", "pk");
+		userService.register(bob, bob + "@test", "secret", "pk");
+
+		List<UUID> ids = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			ids.add(chatService.sendMessage(alice, bob, new byte[]{1}, new byte[]{(byte) i}, new byte[]{4}).getId());
+		}
+		UUID fromBob = chatService.sendMessage(bob, alice, new byte[]{1}, new byte[]{9}, new byte[]{4}).getId();
+		ids.add(fromBob);
+
+		Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		stats.clear();
+		assertEquals(3, chatService.deleteMessages(ids, alice));
+		assertEquals(1, stats.getPrepareStatementCount());
+
+		assertTrue(messageRepository.existsById(fromBob));
+		assertThrows(SecurityException.class, () -> chatService.deleteMessage(fromBob, alice));
+		chatService.deleteMessage(fromBob, bob);
+		assertFalse(messageRepository.existsById(fromBob));
+	}
+
+	@Test
+	void badRowFailsAloneAndOversizedMessageIsRejected() throws Exception {
+		String alice = "alice-" + UUID.randomUUID();
+		String bob   = "bob-" + UUID.randomUUID();
+		userService.register(alice, alice + "@test", "secret", "pk");
+		userService.register(bob, bob + "@test", "secret", "pk");
+		User sender = userDirectory.resolve(alice);
+		User receiver = userDirectory.resolve(bob);
+		User ghost = User.reference(UUID.randomUUID(), "ghost");
+
+		// Enviadas juntas caem no mesmo lote; a FK do destinatário inexistente derruba o batch
+		CompletableFuture<Message> good = messageBatchWriter.submit(
+				new Message(sender, receiver, new byte[]{1}, new byte[]{2}, new byte[]{3}, null));
+		CompletableFuture<Message> bad = messageBatchWriter.submit(
+				new Message(sender, ghost, new byte[]{1}, new byte[]{2}, new byte[]{3}, null));
+
+		assertNotNull(good.get(10, TimeUnit.SECONDS).getSeq());
+		assertThrows(ExecutionException.class, () -> bad.get(10, TimeUnit.SECONDS));
+
+		assertThrows(BadRequestException.class, () -> chatService.sendMessage(
+				alice, bob, new byte[]{1}, new byte[MessageBatchWriter.MAX_MESSAGE_BYTES + 1], new byte[]{4}));
+	}
+
+	@Test
+	void commitAfterTheDeadlineIsRejected() throws Exception {
+		String alice = "alice-" + UUID.randomUUID();
+		String bob   = "bob-" + UUID.randomUUID();
+		userService.register(alice, alice + "@test", "secret", "pk");
+		userService.register(bob, bob + "@test", "secret", "pk");
+		User sender = userDirectory.resolve(alice);
+		User receiver = userDirectory.resolve(bob);
+		UUID id = UUID.randomUUID();
+
+		// Uma transação de escrita que demora mais que o prazo não pode commitar depois da janela do sync
+		TransactionTemplate tx = new TransactionTemplate(transactionManager);
+		RuntimeException e = assertThrows(RuntimeException.class, () -> tx.executeWithoutResult(status -> {
+			jdbc.queryForList("select set_config('chat.commit_deadline', '50ms', true)");
+			jdbc.queryForList("select pg_sleep(0.1)");
+			jdbc.update("""
+					insert into messages (id, conversation_key, sender_id, receiver_id, encrypted_aes_key,
+					                      encrypted_message, iv, timestamp)
+					values (?, ?, ?, ?, ?, ?, ?, localtimestamp)
+					""", id, Message.conversationKey(sender, receiver), sender.getId(), receiver.getId(),
+					new byte[]{1}, new byte[]{2}, new byte[]{3});
+		}));
+		assertTrue(NestedExceptionUtils.getMostSpecificCause(e).getMessage().contains("commit deadline"), e.toString());
+		assertEquals(0, jdbc.queryForObject("select count(*) from messages where id = ?", Integer.class, id));
+	}
+
+	// Sync e export só enxergam mensagens mais velhas que chat.sync.visibility-lag
+	private static void awaitVisible() throws InterruptedException {
+		Thread.sleep(650);
+	}
+}
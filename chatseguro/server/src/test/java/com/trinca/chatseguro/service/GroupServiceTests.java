@@ -0,0 +1,111 @@
+package com.trinca.chatseguro.service;
+
+import com.trinca.chatseguro.dto.ConversationPageDto;
+import com.trinca.chatseguro.dto.MessageDto;
+import com.trinca.chatseguro.event.GroupMembershipChangedEvent;
+import com.trinca.chatseguro.exception.BadRequestException;
+import com.trinca.chatseguro.model.ChatGroup;
+import com.trinca.chatseguro.model.KeyEpoch;
+import com.trinca.chatseguro.model.Message;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class GroupServiceTests {
+
+	@Autowired
+	private GroupService groupService;
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	@Autowired
+	private ApplicationEventPublisher events;
+
+	@Test
+	void groupMessageIsStoredOnceAndPagedWithReaderKeys() throws Exception {
+		String alice = register("alice");
+		String bob   = register("bob");
+		String carol = register("carol");
+
+		ChatGroup group = groupService.create(alice, "trinca", List.of(bob, carol));
+		assertEquals(3, groupService.members(group.getId()).size());
+
+		// A época tem que cobrir exatamente os membros atuais
+		assertThrows(BadRequestException.class, () ->
+				groupService.startKeyEpoch(group.getId(), alice, Map.of(alice, new byte[]{1}, bob, new byte[]{2})));
+		KeyEpoch epoch = groupService.startKeyEpoch(group.getId(), alice,
+				Map.of(alice, new byte[]{1}, bob, new byte[]{2}, carol, new byte[]{3}));
+
+		for (int i = 0; i < 3; i++) {
+			groupService.send(group.getId(), bob, epoch.getId(), new byte[]{(byte) i}, new byte[]{9});
+		}
+		assertEquals(3, jdbc.queryForObject("select count(*) from messages where group_id = ?", Long.class, group.getId()));
+
+		ConversationPageDto first = groupService.history(group.getId(), carol, null, 2);
+		assertEquals(2, first.messages.size());
+		assertNotNull(first.nextCursor);
+		assertArrayEquals(new byte[]{3}, first.keyEpochs.get(epoch.getId()));
+		MessageDto latest = first.messages.get(1);
+		assertEquals(group.getId(), latest.groupId);
+		assertNull(latest.receiverUsername);
+		assertArrayEquals(new byte[]{2}, latest.encryptedMessage);
+
+		ConversationPageDto second = groupService.history(group.getId(), carol, first.nextCursor, 2);
+		assertEquals(1, second.messages.size());
+		assertNull(second.nextCursor);
+		assertArrayEquals(new byte[]{2}, groupService.memberKey(group.getId(), epoch.getId(), bob));
+	}
+
+	@Test
+	void nonMembersCannotSendOrRead() throws Exception {
+		String alice = register("alice");
+		String mallory = register("mallory");
+		ChatGroup group = groupService.create(alice, "solo", List.of());
+		KeyEpoch epoch = groupService.startKeyEpoch(group.getId(), alice, Map.of(alice, new byte[]{1}));
+
+		assertThrows(BadRequestException.class, () ->
+				groupService.send(group.getId(), mallory, epoch.getId(), new byte[]{1}, new byte[]{2}));
+		assertThrows(BadRequestException.class, () -> groupService.history(group.getId(), mallory, null, 10));
+
+		groupService.addMember(group.getId(), alice, mallory);
+		Message saved = groupService.send(group.getId(), mallory, epoch.getId(), new byte[]{1}, new byte[]{2});
+		assertNotNull(saved.getSeq());
+
+		groupService.removeMember(group.getId(), mallory, mallory);
+		assertThrows(BadRequestException.class, () -> groupService.history(group.getId(), mallory, null, 10));
+	}
+
+	@Test
+	void membershipChangeFromAnotherNodeInvalidatesTheCache() throws Exception {
+		String alice = register("alice");
+		String bob   = register("bob");
+		ChatGroup group = groupService.create(alice, "trinca", List.of(bob));
+		assertEquals(2, groupService.members(group.getId()).size());
+
+		// Outro nó removeu bob: a linha some do banco e o aviso chega pelo fan-out
+		jdbc.update("delete from group_members where group_id = ? and user_id = (select id from users where username = ?)",
+				group.getId(), bob);
+		assertEquals(2, groupService.members(group.getId()).size());
+		events.publishEvent(new GroupMembershipChangedEvent(group.getId(), false));
+		assertEquals(1, groupService.members(group.getId()).size());
+	}
+
+	private String register(String prefix) throws Exception {
+		String username = prefix + "-" + UUID.randomUUID();
+		userService.register(username, username + "@test", "secret", "pk");
+		return username;
+	}
+}
@@ -0,0 +1,46 @@
+package com.trinca.chatseguro.service;
+
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtServiceTests {
+
+	private final JwtService jwtService =
+			new JwtService("umasecretmuuitocomplexaegrande123456", 100, new SimpleMeterRegistry());
+
+	@Test
+	void repeatedVerificationIsServedFromCache() {
+		String token = jwtService.generateToken("alice");
+
+		assertEquals("alice", jwtService.verify(token).getSubject());
+		assertEquals("alice", jwtService.extractUsername(token));
+		assertTrue(jwtService.isTokenValid(token, "alice"));
+
+		assertEquals(1, jwtService.getCacheMisses());
+		assertEquals(2, jwtService.getCacheHits());
+	}
+
+	@Test
+	void tamperedTokenIsRejected() {
+		String token = jwtService.generateToken("alice");
+		String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+		assertThrows(JwtException.class, () -> jwtService.verify(tampered));
+		assertEquals(0, jwtService.getCacheHits());
+	}
+
+	@Test
+	void zeroCacheSizeVerifiesEveryCall() {
+		JwtService uncached = new JwtService("umasecretmuuitocomplexaegrande123456", 0, new SimpleMeterRegistry());
+		String token = uncached.generateToken("alice");
+
+		uncached.verify(token);
+		uncached.verify(token);
+
+		assertEquals(2, uncached.getCacheMisses());
+		assertEquals(0, uncached.getCacheHits());
+	}
+}
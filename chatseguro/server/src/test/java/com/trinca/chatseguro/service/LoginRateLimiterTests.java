@@ -0,0 +1,44 @@
+package com.trinca.chatseguro.service;
+
+import com.trinca.chatseguro.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginRateLimiterTests {
+
+	@Test
+	void bucketAllowsBurstThenThrottlesPerKey() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		LoginRateLimiter limiter = new LoginRateLimiter(registry, 3, Duration.ofMinutes(1), 1024);
+
+		for (int i = 0; i < 3; i++) {
+			limiter.acquire("alice", null);
+		}
+		TooManyRequestsException ex = assertThrows(TooManyRequestsException.class, () -> limiter.acquire("alice", null));
+		assertTrue(ex.getRetryAfter().toSeconds() > 50);
+
+		limiter.acquire("bob", null);
+		assertEquals(1.0, registry.counter("auth.login.throttled").count());
+	}
+
+	@Test
+	void throttledAddressDoesNotConsumeUserToken() {
+		LoginRateLimiter limiter = new LoginRateLimiter(new SimpleMeterRegistry(), 2, Duration.ofMinutes(1), 1 << 20);
+
+		// Esvazia o balde do IP com outros usuários
+		limiter.acquire("x", "10.0.0.1");
+		limiter.acquire("y", "10.0.0.1");
+		for (int i = 0; i < 5; i++) {
+			assertThrows(TooManyRequestsException.class, () -> limiter.acquire("alice", "10.0.0.1"));
+		}
+
+		// As tentativas barradas pelo IP não gastaram as fichas de alice
+		limiter.acquire("alice", "10.0.0.2");
+		limiter.acquire("alice", "10.0.0.3");
+		assertThrows(TooManyRequestsException.class, () -> limiter.acquire("alice", "10.0.0.4"));
+	}
+}
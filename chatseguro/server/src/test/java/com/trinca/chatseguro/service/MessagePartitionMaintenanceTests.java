@@ -0,0 +1,87 @@
+package com.trinca.chatseguro.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class MessagePartitionMaintenanceTests {
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Test
+	void partitionsAreCreatedAheadAndExpiredOnesDropped() {
+		MessagePartitionMaintenance maintenance = new MessagePartitionMaintenance(
+				jdbc, new SimpleMeterRegistry(), Duration.ofDays(30), true, 2, Duration.ofHours(6));
+
+		// Mês bem antigo, para o corte não alcançar partições com dados reais do banco de teste
+		maintenance.ensurePartitions(LocalDate.of(2001, 2, 10));
+		assertNotNull(regclass("messages_p200101"));
+		assertNotNull(regclass("messages_p200104"));
+
+		List<String> removed = maintenance.purge(LocalDateTime.of(2001, 4, 1, 0, 0));
+		assertEquals(List.of("messages_p200101", "messages_p200102"), removed.stream().sorted().toList());
+		assertNull(regclass("messages_p200101"));
+		assertNotNull(regclass("messages_p200103"));
+
+		maintenance.purge(LocalDateTime.of(2001, 7, 1, 0, 0));
+		assertNull(regclass("messages_p200104"));
+	}
+
+	@Test
+	void interruptedDetachIsFinalizedAndLeftoverTablesDropped() throws Exception {
+		MessagePartitionMaintenance maintenance = new MessagePartitionMaintenance(
+				jdbc, new SimpleMeterRegistry(), Duration.ofDays(30), true, 2, Duration.ofHours(6));
+		maintenance.ensurePartitions(LocalDate.of(2002, 2, 10));
+
+		// Sobra de uma rodada que caiu entre o detach e o drop
+		jdbc.execute("alter table messages detach partition messages_p200201");
+
+		// DETACH CONCURRENTLY interrompido: uma transação aberta segura o snapshot e o detach
+		// estoura o timeout na segunda fase, deixando a partição como pendente
+		try (Connection reader = dataSource.getConnection(); Connection detacher = dataSource.getConnection()) {
+			reader.setAutoCommit(false);
+			reader.createStatement().execute("select count(*) from messages_p200202");
+			try (Statement statement = detacher.createStatement()) {
+				statement.execute("set statement_timeout = '500ms'");
+				assertThrows(SQLException.class, () -> statement.execute(
+						"alter table messages detach partition messages_p200202 concurrently"));
+				statement.execute("set statement_timeout = 0");
+			}
+			reader.rollback();
+		}
+		assertEquals(Boolean.TRUE, jdbc.queryForObject(
+				"select inhdetachpending from pg_inherits where inhrelid = 'messages_p200202'::regclass", Boolean.class));
+
+		List<String> removed = maintenance.purge(LocalDateTime.of(2002, 4, 1, 0, 0));
+		assertTrue(removed.containsAll(List.of("messages_p200201", "messages_p200202")), removed.toString());
+		assertNull(regclass("messages_p200201"));
+		assertNull(regclass("messages_p200202"));
+		assertNotNull(regclass("messages_p200203"));
+
+		// O próximo detach em messages volta a funcionar
+		maintenance.purge(LocalDateTime.of(2002, 7, 1, 0, 0));
+		assertNull(regclass("messages_p200204"));
+	}
+
+	private String regclass(String name) {
+		return jdbc.queryForObject("select to_regclass(?)::text", String.class, name);
+	}
+}
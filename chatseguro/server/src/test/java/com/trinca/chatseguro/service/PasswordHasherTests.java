@@ -0,0 +1,56 @@
+package com.trinca.chatseguro.service;
+
+import com.trinca.chatseguro.exception.ServiceBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHasherTests {
+
+	@Test
+	void fullQueueRejectsInsteadOfWaiting() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		PasswordEncoder slow = new PasswordEncoder() {
+			@Override
+			public String encode(CharSequence raw) {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return "hash:" + raw;
+			}
+
+			@Override
+			public boolean matches(CharSequence raw, String encoded) {
+				return encode(raw).equals(encoded);
+			}
+		};
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		PasswordHasher hasher = new PasswordHasher(slow, registry, 1, 1);
+
+		// Uma em execução e uma na fila; a terceira não tem onde entrar
+		var callers = Executors.newVirtualThreadPerTaskExecutor();
+		CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> hasher.encode("a"), callers);
+		started.await();
+		CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> hasher.encode("b"), callers);
+		while (registry.get("auth.hash.queue").gauge().value() == 0) {
+			Thread.sleep(5);
+		}
+		assertThrows(ServiceBusyException.class, () -> hasher.encode("c"));
+		assertEquals(1.0, registry.counter("auth.hash.rejected").count());
+
+		release.countDown();
+		assertEquals("hash:a", running.get());
+		assertEquals("hash:b", queued.get());
+		hasher.stop();
+	}
+}
@@ -0,0 +1,74 @@
+package com.trinca.chatseguro.service;
+
+import com.trinca.chatseguro.dto.PublicKeyDto;
+import com.trinca.chatseguro.event.UserChangedEvent;
+import com.trinca.chatseguro.exception.BadRequestException;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class PublicKeyDirectoryTests {
+
+	@Autowired
+	private PublicKeyDirectory publicKeyDirectory;
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	@Autowired
+	private ApplicationEventPublisher events;
+
+	@Test
+	void bulkLookupUsesOneQueryAndKeyChangesInvalidate() throws Exception {
+		String prefix = UUID.randomUUID().toString().substring(0, 8);
+		List<String> usernames = List.of(prefix + "-a", prefix + "-b", prefix + "-c");
+		for (String username : usernames) {
+			userService.register(username, username + "@test", "secret", "pk-" + username);
+		}
+
+		Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		stats.clear();
+		Map<String, PublicKeyDto> keys = publicKeyDirectory.findAll(
+				List.of(usernames.get(0), usernames.get(1), usernames.get(2), prefix + "-missing"));
+		assertEquals(3, keys.size());
+		assertEquals(1, stats.getPrepareStatementCount());
+
+		stats.clear();
+		String etag = publicKeyDirectory.find(usernames.get(0)).orElseThrow().etag;
+		assertEquals(0, stats.getPrepareStatementCount());
+
+		// Sem a senha atual a chave não muda (nem o cache é invalidado)
+		assertThrows(BadRequestException.class,
+				() -> userService.updatePublicKey(usernames.get(0), "wrong", "forged"));
+		assertEquals(etag, publicKeyDirectory.find(usernames.get(0)).orElseThrow().etag);
+
+		userService.updatePublicKey(usernames.get(0), "secret", "rotated");
+		PublicKeyDto rotated = publicKeyDirectory.find(usernames.get(0)).orElseThrow();
+		assertEquals("rotated", rotated.publicKey);
+		assertNotEquals(etag, rotated.etag);
+
+		// Rotação feita em outro nó: chega como evento não local (frame USER_CHANGED)
+		jdbc.update("update users set public_key = ? where username = ?", "rotated-elsewhere", usernames.get(0));
+		assertEquals("rotated", publicKeyDirectory.find(usernames.get(0)).orElseThrow().publicKey);
+		events.publishEvent(new UserChangedEvent(usernames.get(0), false));
+		assertEquals("rotated-elsewhere", publicKeyDirectory.find(usernames.get(0)).orElseThrow().publicKey);
+	}
+}
@@ -0,0 +1,93 @@
+package com.trinca.chatseguro.service;
+
+import com.trinca.chatseguro.dto.ReceiptDto;
+import com.trinca.chatseguro.model.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Flush manual: o intervalo longo impede que o agendador grave no meio do teste
+@SpringBootTest(properties = "chat.receipts.flush-interval=1h")
+class ReceiptServiceTests {
+
+	@Autowired
+	private ReceiptService receiptService;
+
+	@Autowired
+	private UserService userService;
+
+	@Autowired
+	private ChatService chatService;
+
+	@Autowired
+	private UserDirectory userDirectory;
+
+	@Autowired
+	private JdbcTemplate jdbc;
+
+	@Test
+	void acksAreCoalescedIntoOneMonotonicRowPerConversation() throws Exception {
+		String prefix = UUID.randomUUID().toString().substring(0, 8);
+		userService.register(prefix + "-a", prefix + "-a@test", "secret", "pk");
+		userService.register(prefix + "-b", prefix + "-b@test", "secret", "pk");
+		User a = userDirectory.resolve(prefix + "-a");
+		User b = userDirectory.resolve(prefix + "-b");
+		long first = chatService.sendMessage(a.getUsername(), b.getUsername(), new byte[]{1}, new byte[]{2}, new byte[]{4}).getSeq();
+		long second = chatService.sendMessage(a.getUsername(), b.getUsername(), new byte[]{1}, new byte[]{2}, new byte[]{4}).getSeq();
+		long last = chatService.sendMessage(a.getUsername(), b.getUsername(), new byte[]{1}, new byte[]{2}, new byte[]{4}).getSeq();
+
+		receiptService.ack(b.getUsername(), a.getUsername(), second, 0);
+		receiptService.ack(b.getUsername(), a.getUsername(), first, 0);
+		receiptService.ack(b.getUsername(), a.getUsername(), 0, last);
+		assertEquals(1, receiptService.pendingCount());
+
+		// Acks ainda em memória já aparecem na consulta
+		ReceiptDto before = receiptService.receiptsOf(a, b);
+		assertEquals(last, before.delivered);
+		assertEquals(last, before.read);
+
+		receiptService.flush();
+		assertEquals(0, receiptService.pendingCount());
+
+		// Um ack atrasado não faz a marca gravada voltar
+		receiptService.ack(b.getUsername(), a.getUsername(), first, first);
+		receiptService.flush();
+
+		ReceiptDto after = receiptService.receiptsOf(a, b);
+		assertEquals(last, after.delivered);
+		assertEquals(last, after.read);
+		assertEquals(1, jdbc.queryForObject(
+				"select count(*) from conversation_receipts where reader_id = ?", Integer.class, b.getId()));
+		assertEquals(0, receiptService.receiptsOf(b, a).read);
+	}
+
+	@Test
+	void acksBeyondTheLastStoredMessageAreCapped() throws Exception {
+		String prefix = UUID.randomUUID().toString().substring(0, 8);
+		userService.register(prefix + "-a", prefix + "-a@test", "secret", "pk");
+		userService.register(prefix + "-b", prefix + "-b@test", "secret", "pk");
+		User a = userDirectory.resolve(prefix + "-a");
+		User b = userDirectory.resolve(prefix + "-b");
+
+		// Sem mensagem nenhuma de a para b o ack não deixa rastro
+		receiptService.ack(b.getUsername(), a.getUsername(), 1_000_000, 1_000_000);
+		assertEquals(0, receiptService.receiptsOf(a, b).read);
+		receiptService.flush();
+		assertEquals(0, jdbc.queryForObject(
+				"select count(*) from conversation_receipts where reader_id = ?", Integer.class, b.getId()));
+
+		long last = chatService.sendMessage(a.getUsername(), b.getUsername(), new byte[]{1}, new byte[]{2}, new byte[]{4}).getSeq();
+		receiptService.ack(b.getUsername(), a.getUsername(), last + 1_000, last + 1_000);
+		assertEquals(last, receiptService.receiptsOf(a, b).read);
+
+		receiptService.flush();
+		assertEquals(last, jdbc.queryForObject(
+				"select read_seq from conversation_receipts where reader_id = ?", Long.class, b.getId()));
+		assertEquals(last, receiptService.receiptsOf(a, b).delivered);
+	}
+}